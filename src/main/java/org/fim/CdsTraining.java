@@ -0,0 +1,90 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim;
+
+import org.apache.commons.io.FileUtils;
+import org.fim.model.Context;
+import org.fim.util.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Training run used by the build to generate the AppCDS archive of the fat jar.
+ * It runs the main commands on a small repository, so that the classes they load are archived and load faster in the next runs.
+ */
+public class CdsTraining {
+    private static final String[][] COMMANDS = {
+            {"init", "-y", "-m", "Training"},
+            {"status"},
+            {"status", "-n"},
+            {"status", "-s"},
+            {"commit", "-y", "-m", "Training"},
+            {"log"},
+            {"find-duplicates", "-l"},
+            {"find-duplicates", "-l", "--output-type", "json"},
+            {"find-duplicates", "-l", "--output-type", "csv"},
+            {"display-ignored"},
+            {"rollback", "-y"},
+            {"purge-states", "-y"},
+            {"version"},
+            {"help"}
+    };
+
+    public static void main(String[] args) throws Exception {
+        Path trainingDir = Paths.get(args.length > 0 ? args[0] : "build/cds-training").toAbsolutePath();
+        FileUtils.deleteDirectory(trainingDir.toFile());
+        Files.createDirectories(trainingDir);
+        try {
+            createFiles(trainingDir);
+
+            PrintStream initialOut = Logger.out;
+            Logger.out = new PrintStream(OutputStream.nullOutputStream());
+            try {
+                for (String[] command : COMMANDS) {
+                    Context context = new Context();
+                    context.setCurrentDirectory(trainingDir);
+                    Fim.runCommand(command, context);
+                    if (command[0].equals("init")) {
+                        Files.writeString(trainingDir.resolve("dir01/file01"), "Modified content");
+                    }
+                }
+            } finally {
+                Logger.out = initialOut;
+            }
+        } finally {
+            FileUtils.deleteDirectory(trainingDir.toFile());
+        }
+    }
+
+    private static void createFiles(Path trainingDir) throws IOException {
+        for (int dirIndex = 1; dirIndex <= 3; dirIndex++) {
+            Path dir = Files.createDirectories(trainingDir.resolve(String.format("dir%02d", dirIndex)));
+            for (int fileIndex = 1; fileIndex <= 10; fileIndex++) {
+                // Some files have the same content, so that duplicates are found
+                Files.writeString(dir.resolve(String.format("file%02d", fileIndex)), "Content " + (fileIndex % 5));
+            }
+        }
+    }
+}
@@ -39,8 +39,10 @@ import org.fim.command.PurgeStatesCommand;
 import org.fim.command.RemoveDuplicatesCommand;
 import org.fim.command.ResetFileAttributesCommand;
 import org.fim.command.RollbackCommand;
+import org.fim.command.ServerCommand;
 import org.fim.command.StatusCommand;
 import org.fim.command.VersionCommand;
+import org.fim.command.WatchCommand;
 import org.fim.command.exception.BadFimUsageException;
 import org.fim.command.exception.DontWantToContinueException;
 import org.fim.command.exception.RepositoryException;
@@ -48,10 +50,14 @@ import org.fim.internal.SettingsManager;
 import org.fim.model.Command;
 import org.fim.model.Command.FimReposConstraint;
 import org.fim.model.Context;
+import org.fim.model.DeduplicationMode;
 import org.fim.model.FilePattern;
+import org.fim.model.FileReadMode;
+import org.fim.model.HashAlgorithm;
 import org.fim.model.Ignored;
 import org.fim.model.OutputType;
 import org.fim.model.SortMethod;
+import org.fim.model.StateFormat;
 import org.fim.util.Logger;
 
 import java.io.PrintWriter;
@@ -64,6 +70,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Scanner;
 
+import static org.fim.model.Constants.SIZE_1_MB;
 import static org.fim.model.HashMode.dontHash;
 import static org.fim.model.HashMode.hashAll;
 import static org.fim.model.HashMode.hashMediumBlock;
@@ -75,19 +82,37 @@ public class Fim {
 
     private final List<AbstractCommand> commands = buildCommands();
     private final Options options = buildOptions();
+    private Path clientDirectory;
 
     public static void main(String[] args) throws Exception {
+        exitWithStatus(runCommand(args, new Context()));
+    }
+
+    /**
+     * Run the command without exiting the JVM, so that the Fim server can run many of them.
+     *
+     * @return the exit status of the command
+     */
+    public static int runCommand(String[] args, Context context) throws Exception {
+        return runCommand(args, context, null);
+    }
+
+    /**
+     * @param clientDirectory current directory of the client that sent the command to the Fim server. The relative paths of the options are
+     *                        resolved against it. When null, they are resolved against the current directory of the JVM
+     */
+    public static int runCommand(String[] args, Context context, Path clientDirectory) throws Exception {
         try {
             Fim fim = new Fim();
-            Context context = new Context();
+            fim.clientDirectory = clientDirectory;
             fim.run(args, context);
-            exitWithStatus(0);
+            return 0;
         } catch (DontWantToContinueException ex) {
-            exitWithStatus(0);
+            return 0;
         } catch (BadFimUsageException ex) {
-            exitWithStatus(-1);
+            return -1;
         } catch (RepositoryException ex) {
-            exitWithStatus(-2);
+            return -2;
         }
     }
 
@@ -120,6 +145,8 @@ public class Fim {
                 new DisplayIgnoredFilesCommand(),
                 new RollbackCommand(),
                 new PurgeStatesCommand(),
+                new WatchCommand(),
+                new ServerCommand(),
                 new HelpCommand(this),
                 new VersionCommand());
     }
@@ -178,6 +205,44 @@ public class Fim {
                 - human: display duplicates in human readable messages (default)
                 - csv: display duplicates in CSV format
                 - json: display duplicates in JSON format""").hasArg().build());
+        opts.addOption(buildOption(null, "trust-mtime", """
+                Reuse the hash of the last State for files whose size and dates did not change.
+                When used with 'init', it becomes the default of the repository""").build());
+        opts.addOption(buildOption(null, "paranoid", "Hash the content of all the files, even when the size and dates did not change").build());
+        opts.addOption(buildOption(null, "state-format", """
+                Format used to save the States of the repository. Set during 'init', or 'commit' to convert the next States. Supported formats are:
+                - json: gzipped JSON (default)
+                - binary: compact binary format, faster to load and save""").hasArg().build());
+        opts.addOption(buildOption(null, "sort-merge", """
+                Compare the States with a merge on the file names instead of indexing the whole last State.
+                Use less memory on huge repositories""").build());
+        opts.addOption(buildOption(null, "hash-algorithm", """
+                Algorithm used to hash the file content. Set during 'init', it cannot change afterward. Supported algorithms are:
+                - sha512: SHA-512 (default)
+                - sha256: SHA-256, faster on CPUs having the SHA extensions
+                - blake3: BLAKE3, fast on all the CPUs""").hasArg().build());
+        opts.addOption(buildOption(null, "read-mode", """
+                How the file content is read to be hashed. Supported modes are:
+                - auto: read the files up to 1 MB and map the others into memory (default)
+                - mmap: map all the files into memory
+                - read: read all the files, without mapping them""").hasArg().build());
+        opts.addOption(buildOption(null, "threads-per-device", """
+                Give to each disk its own queue and the specified number of threads to hash its files.
+                Use it when the repository spans mount points of several disks""").hasArg().build());
+        opts.addOption(buildOption(null, "inode-order", """
+                Hash the files sorted by inode, which is close to their physical order on ext4 and XFS.
+                Reduces the seeks of hard disks, mostly with one thread per disk""").build());
+        opts.addOption(buildOption(null, "tree-hash", """
+                Hash the files bigger than the specified size in MB by segments of this size in parallel, and combine the hashes of the segments.
+                Set during 'init', it cannot change afterward""").hasArg().build());
+        opts.addOption(buildOption(null, "xattr-cache", """
+                Keep the hash of each file into its 'user.fim.hash' extended attribute, and reuse it while the size and dates of the file do not change.
+                The other repositories covering the same files can reuse it too""").build());
+        opts.addOption(buildOption(null, "dedup-mode", """
+                What 'fdup' and 'rdup' do with the duplicates they remove. Supported modes are:
+                - remove: delete the duplicates (default)
+                - hardlink: replace each duplicate with a hard link to the preserved file, on the same file system only
+                - reflink: replace each duplicate with a copy-on-write clone of the preserved file, if the file system supports it""").hasArg().build());
         return opts;
     }
 
@@ -279,6 +344,18 @@ public class Fim {
             Logger.error(String.format("Not allowed to save settings into the '%s' directory", context.getRepositoryDotFimDir()));
             throw new RepositoryException();
         }
+
+        if (context.isHashAlgorithmSpecified() && context.getHashAlgorithm() != settingsManager.getHashAlgorithm()) {
+            Logger.warning(String.format("The repository use the '%s' hash algorithm, that can only be chosen during 'init'",
+                    settingsManager.getHashAlgorithm()));
+        }
+        context.setHashAlgorithm(settingsManager.getHashAlgorithm());
+
+        if (context.isTreeHashSegmentSizeSpecified() && context.getTreeHashSegmentSize() != settingsManager.getTreeHashSegmentSize()) {
+            Logger.warning(String.format("The repository use a tree hash segment size of %d MB, that can only be chosen during 'init'",
+                    settingsManager.getTreeHashSegmentSize() / SIZE_1_MB));
+        }
+        context.setTreeHashSegmentSize(settingsManager.getTreeHashSegmentSize());
     }
 
     private Command buildCommand(Context context, CommandLineParser commandLineParser, String[] optionArgs, Command command) {
@@ -304,7 +381,7 @@ public class Fim {
             manageMasterFimOption(context, cmd);
 
             if (cmd.hasOption('d')) {
-                context.setCurrentDirectory(Paths.get(cmd.getOptionValue('d')));
+                context.setCurrentDirectory(resolveClientPath(cmd.getOptionValue('d')));
             }
 
             if (cmd.hasOption('t')) {
@@ -312,7 +389,9 @@ public class Fim {
                 context.setThreadCountSpecified(true);
             }
 
-            context.setUseDynamicScaling(context.getThreadCount() <= 0);
+            manageThreadsPerDeviceOption(context, cmd);
+
+            context.setUseDynamicScaling(context.getThreadCount() <= 0 && !context.isHashPerDevice());
 
             context.setTruncateOutput(Integer.parseInt(cmd.getOptionValue('o', "200")));
             if (context.getTruncateOutput() < 0) {
@@ -335,6 +414,18 @@ public class Fim {
 
             manageOutputTypeOption(context, cmd);
 
+            manageStateFormatOption(context, cmd);
+            manageHashAlgorithmOption(context, cmd);
+            manageReadModeOption(context, cmd);
+            manageTreeHashOption(context, cmd);
+            manageDeduplicationModeOption(context, cmd);
+
+            context.setTrustModificationTime(cmd.hasOption("trust-mtime"));
+            context.setParanoid(cmd.hasOption("paranoid"));
+            context.setSortMergeComparison(cmd.hasOption("sort-merge"));
+            context.setInodeOrder(cmd.hasOption("inode-order"));
+            context.setUseXattrCache(cmd.hasOption("xattr-cache"));
+
             if (cmd.hasOption('h')) {
                 command = new HelpCommand(this);
             } else if (cmd.hasOption('v')) {
@@ -364,6 +455,86 @@ public class Fim {
         }
     }
 
+    private static void manageStateFormatOption(Context context, CommandLine cmd) {
+        if (cmd.hasOption("state-format")) {
+            String stateFormat = cmd.getOptionValue("state-format");
+            try {
+                context.setStateFormat(StateFormat.valueOf(stateFormat.toLowerCase()));
+            } catch (IllegalArgumentException ex) {
+                Logger.error(String.format("Unsupported State format '%s'", stateFormat));
+                throw new BadFimUsageException();
+            }
+        }
+    }
+
+    private static void manageHashAlgorithmOption(Context context, CommandLine cmd) {
+        if (cmd.hasOption("hash-algorithm")) {
+            String hashAlgorithm = cmd.getOptionValue("hash-algorithm");
+            try {
+                context.setHashAlgorithm(HashAlgorithm.valueOf(hashAlgorithm.toLowerCase()));
+                context.setHashAlgorithmSpecified(true);
+            } catch (IllegalArgumentException ex) {
+                Logger.error(String.format("Unsupported hash algorithm '%s'", hashAlgorithm));
+                throw new BadFimUsageException();
+            }
+        }
+    }
+
+    private static void manageReadModeOption(Context context, CommandLine cmd) {
+        if (cmd.hasOption("read-mode")) {
+            String readMode = cmd.getOptionValue("read-mode");
+            try {
+                context.setFileReadMode(FileReadMode.valueOf(readMode.toLowerCase()));
+            } catch (IllegalArgumentException ex) {
+                Logger.error(String.format("Unsupported read mode '%s'", readMode));
+                throw new BadFimUsageException();
+            }
+        }
+    }
+
+    private static void manageTreeHashOption(Context context, CommandLine cmd) {
+        if (cmd.hasOption("tree-hash")) {
+            String segmentSize = cmd.getOptionValue("tree-hash");
+            try {
+                context.setTreeHashSegmentSize(Long.parseLong(segmentSize) * SIZE_1_MB);
+            } catch (NumberFormatException ex) {
+                context.setTreeHashSegmentSize(0);
+            }
+            if (context.getTreeHashSegmentSize() <= 0) {
+                Logger.error(String.format("Unsupported tree hash segment size '%s'", segmentSize));
+                throw new BadFimUsageException();
+            }
+            context.setTreeHashSegmentSizeSpecified(true);
+        }
+    }
+
+    private static void manageDeduplicationModeOption(Context context, CommandLine cmd) {
+        if (cmd.hasOption("dedup-mode")) {
+            String deduplicationMode = cmd.getOptionValue("dedup-mode");
+            try {
+                context.setDeduplicationMode(DeduplicationMode.valueOf(deduplicationMode.toLowerCase()));
+            } catch (IllegalArgumentException ex) {
+                Logger.error(String.format("Unsupported deduplication mode '%s'", deduplicationMode));
+                throw new BadFimUsageException();
+            }
+        }
+    }
+
+    private static void manageThreadsPerDeviceOption(Context context, CommandLine cmd) {
+        if (cmd.hasOption("threads-per-device")) {
+            String threadsPerDevice = cmd.getOptionValue("threads-per-device");
+            try {
+                context.setThreadsPerDevice(Integer.parseInt(threadsPerDevice));
+            } catch (NumberFormatException ex) {
+                context.setThreadsPerDevice(0);
+            }
+            if (!context.isHashPerDevice()) {
+                Logger.error(String.format("Unsupported thread count per device '%s'", threadsPerDevice));
+                throw new BadFimUsageException();
+            }
+        }
+    }
+
     private static void manageOrderOption(Context context, CommandLine cmd) {
         if (cmd.hasOption("order")) {
             String order = cmd.getOptionValue("order");
@@ -402,15 +573,26 @@ public class Fim {
         }
     }
 
-    private static void manageMasterFimOption(Context context, CommandLine cmd) {
+    private void manageMasterFimOption(Context context, CommandLine cmd) {
         if (cmd.hasOption('M')) {
             String masterFimRepositoryDir = cmd.getOptionValue('M');
-            if (!Files.exists(Paths.get(masterFimRepositoryDir))) {
+            Path masterFimRepository = resolveClientPath(masterFimRepositoryDir);
+            if (!Files.exists(masterFimRepository)) {
                 Logger.error(String.format("Master Fim repository directory '%s' does not exist", masterFimRepositoryDir));
                 throw new BadFimUsageException();
             }
-            context.setMasterFimRepositoryDir(masterFimRepositoryDir);
+            context.setMasterFimRepositoryDir(masterFimRepository.toString());
+        }
+    }
+
+    /**
+     * Run by the Fim server, the relative paths are the ones of the client.
+     */
+    private Path resolveClientPath(String path) {
+        if (clientDirectory == null) {
+            return Paths.get(path);
         }
+        return clientDirectory.resolve(path);
     }
 
     private List<FilePattern> parseFilePatterns(String patterns) {
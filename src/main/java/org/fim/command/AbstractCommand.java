@@ -20,16 +20,26 @@
 package org.fim.command;
 
 import org.fim.command.exception.BadFimUsageException;
+import org.fim.internal.ChangeJournal;
 import org.fim.internal.SettingsManager;
+import org.fim.internal.StateGenerator;
+import org.fim.internal.StateManager;
 import org.fim.model.Command;
 import org.fim.model.Context;
+import org.fim.model.State;
 import org.fim.util.HashModeUtil;
 import org.fim.util.Logger;
 
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import static org.atteo.evo.inflector.English.plural;
+import static org.fim.internal.FimIgnoreManager.DOT_FIM_IGNORE;
 import static org.fim.model.HashMode.dontHash;
 import static org.fim.model.HashMode.hashAll;
 import static org.fim.util.HashModeUtil.hashModeToString;
@@ -86,6 +96,79 @@ public abstract class AbstractCommand implements Command {
         }
     }
 
+    /**
+     * Tells if the hash of the files whose size and dates did not change can be taken from the last State instead of being computed again.
+     */
+    protected boolean isHashReuseAllowed(Context context, SettingsManager settingsManager) {
+        if (context.getHashMode() == dontHash || context.isParanoid()) {
+            return false;
+        }
+
+        if (!context.isTrustModificationTime() && !settingsManager.isTrustModificationTime()) {
+            return false;
+        }
+
+        if (settingsManager.isFullRehashDue()) {
+            long lastFullRehashTimestamp = settingsManager.getLastFullRehashTimestamp();
+            if (lastFullRehashTimestamp <= 0) {
+                Logger.info("No full rehash done yet. Hashing the content of all the files");
+            } else {
+                long elapsedDays = TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis() - lastFullRehashTimestamp);
+                Logger.info(String.format("No full rehash done for %d %s. Hashing the content of all the files",
+                        elapsedDays, plural("day", (int) elapsedDays)));
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Generate the current State. When 'fim watch' journaled all the changes made since the last State, only the changed paths are scanned.
+     * The journal is used only when the modification times are trusted, as it does not see the changes made to a network share by another
+     * computer, nor the bit rot.
+     */
+    protected State generateCurrentState(Context context, StateGenerator generator, State lastState, String comment)
+            throws IOException, NoSuchAlgorithmException {
+        Set<String> changedPaths = getJournaledChanges(context, lastState);
+        if (changedPaths == null) {
+            return generator.generateState(comment, context.getRepositoryRootDir(), context.getCurrentDirectory());
+        }
+
+        Logger.info(String.format("Using the change journal of 'fim watch'. Scanning only %d changed %s",
+                changedPaths.size(), plural("path", changedPaths.size())));
+        return generator.generateState(comment, context.getRepositoryRootDir(), lastState, changedPaths);
+    }
+
+    /**
+     * @return the paths changed since the last State, or null if all the files must be scanned
+     */
+    private Set<String> getJournaledChanges(Context context, State lastState) throws IOException {
+        if (context.isInvokedFromSubDirectory() || context.isParanoid() ||
+            (context.getIncludePatterns() != null && !context.getIncludePatterns().isEmpty()) ||
+            (context.getExcludePatterns() != null && !context.getExcludePatterns().isEmpty())) {
+            return null;
+        }
+
+        // The hash of the unchanged files are taken from the last State
+        if (lastState.getHashAlgorithm() != context.getHashAlgorithm() || lastState.getTreeHashSegmentSize() != context.getTreeHashSegmentSize() ||
+            !HashModeUtil.isCompatible(lastState.getHashMode(), context.getHashMode())) {
+            return null;
+        }
+
+        // Like the hash reuse, the journal trusts the size and dates of the files, so it needs the same opt-in
+        SettingsManager settingsManager = new SettingsManager(context);
+        if (!context.isTrustModificationTime() && !settingsManager.isTrustModificationTime() || settingsManager.isFullRehashDue()) {
+            return null;
+        }
+
+        Set<String> changedPaths = new ChangeJournal(context).getChangedPathsSince(new StateManager(context).getLastStateNumber());
+        if (changedPaths != null && changedPaths.contains(DOT_FIM_IGNORE)) {
+            // The root .fimignore applies to all the files
+            return null;
+        }
+        return changedPaths;
+    }
+
     protected static boolean confirmAction(Context context, String action) {
         return confirmAction(context, new Scanner(System.in), action);
     }
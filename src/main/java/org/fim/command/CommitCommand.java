@@ -21,6 +21,7 @@ package org.fim.command;
 
 import org.fim.command.exception.BadFimUsageException;
 import org.fim.command.exception.DontWantToContinueException;
+import org.fim.internal.ChangeJournal;
 import org.fim.internal.SettingsManager;
 import org.fim.internal.StateComparator;
 import org.fim.internal.StateGenerator;
@@ -92,10 +93,30 @@ public class CommitCommand extends AbstractCommand {
             }
         }
 
+        if (context.getStateFormat() != null && context.getStateFormat() != settingsManager.getStateFormat()) {
+            settingsManager.setStateFormat(context.getStateFormat());
+            settingsManager.save();
+            Logger.info(String.format("The next States will be saved using the '%s' format", context.getStateFormat()));
+        }
+
         manager = new StateManager(context);
-        State currentState = new StateGenerator(context).generateState(context.getComment(), context.getRepositoryRootDir(),
-                context.getCurrentDirectory());
         State lastState = manager.loadLastState();
+        boolean hashReuseAllowed = isHashReuseAllowed(context, settingsManager);
+        boolean fullRehash = !hashReuseAllowed && isFullRehash(context);
+        StateGenerator generator = new StateGenerator(context);
+        if (hashReuseAllowed) {
+            generator.setPreviousState(lastState);
+        }
+        // A full rehash must really read the content of the files
+        generator.setXattrCacheTrusted(!fullRehash);
+        ChangeJournal journal = new ChangeJournal(context);
+        ChangeJournal.Position journalPosition = journal.getPosition();
+        State currentState;
+        if (fullRehash) {
+            currentState = generator.generateState(context.getComment(), context.getRepositoryRootDir(), context.getCurrentDirectory());
+        } else {
+            currentState = generateCurrentState(context, generator, lastState, context.getComment());
+        }
         State lastStateToCompare = lastState;
 
         if (context.isInvokedFromSubDirectory()) {
@@ -111,10 +132,28 @@ public class CommitCommand extends AbstractCommand {
         if (result.somethingModified()) {
             commitModifications(context, currentState, lastState, result);
         }
+
+        if (!context.isInvokedFromSubDirectory()) {
+            // The journaled changes were scanned, only the next ones are needed
+            journal.markBase(manager.getLastStateNumber(), journalPosition);
+        }
+
+        if (fullRehash) {
+            settingsManager.setLastFullRehashTimestamp(System.currentTimeMillis());
+            settingsManager.save();
+        }
         result.displayChanges("Nothing committed");
         return result;
     }
 
+    /**
+     * @return true if the content of all the files of the repository was hashed with the global hash mode, while the mtime can be trusted
+     */
+    private boolean isFullRehash(Context context) {
+        boolean trustModificationTime = context.isTrustModificationTime() || settingsManager.isTrustModificationTime();
+        return trustModificationTime && !context.isInvokedFromSubDirectory() && context.getHashMode() == settingsManager.getGlobalHashMode();
+    }
+
     private void commitModifications(Context context, State originalCurrentState, State originalLastState, CompareResult result) throws Exception {
         State currentState = originalCurrentState;
         State lastState = originalLastState;
@@ -22,7 +22,7 @@ package org.fim.command;
 import org.fim.command.exception.BadFimUsageException;
 import org.fim.command.exception.DontWantToContinueException;
 import org.fim.internal.DuplicateFinder;
-import org.fim.internal.StateGenerator;
+import org.fim.internal.ProgressiveDuplicateFinder;
 import org.fim.internal.StateManager;
 import org.fim.model.Context;
 import org.fim.model.DuplicateResult;
@@ -64,14 +64,14 @@ public class FindDuplicatesCommand extends AbstractCommand {
         Logger.info(String.format("Searching for duplicate files%s", context.isUseLastState() ? " from the last committed State" : ""));
         Logger.newLine();
 
-        State state;
+        DuplicateResult result;
         if (context.isUseLastState()) {
-            state = new StateManager(context).loadLastState();
+            State state = new StateManager(context).loadLastState();
+            result = new DuplicateFinder(context).findDuplicates(state);
         } else {
-            state = new StateGenerator(context).generateState("", context.getRepositoryRootDir(), context.getCurrentDirectory());
+            // Only the files sharing their size with another one are hashed
+            result = new ProgressiveDuplicateFinder(context).findDuplicates(context.getCurrentDirectory());
         }
-
-        DuplicateResult result = new DuplicateFinder(context).findDuplicates(state);
         result.displayAndRemoveDuplicates();
         return result;
     }
@@ -27,6 +27,7 @@ import org.fim.internal.StateGenerator;
 import org.fim.internal.StateManager;
 import org.fim.model.CompareResult;
 import org.fim.model.Context;
+import org.fim.model.HashAlgorithm;
 import org.fim.model.State;
 import org.fim.util.Logger;
 
@@ -94,12 +95,29 @@ public class InitCommand extends AbstractCommand {
             throw new RepositoryException();
         }
 
-        if (context.getHashMode() != hashAll) {
+        if (context.getHashMode() != hashAll || context.isTrustModificationTime() || context.getStateFormat() != null ||
+            context.getHashAlgorithm() != HashAlgorithm.sha512 || context.getTreeHashSegmentSize() != 0) {
             SettingsManager settingsManager = new SettingsManager(context);
             settingsManager.setGlobalHashMode(context.getHashMode());
+            settingsManager.setHashAlgorithm(context.getHashAlgorithm());
+            settingsManager.setTreeHashSegmentSize(context.getTreeHashSegmentSize());
+            if (context.getStateFormat() != null) {
+                settingsManager.setStateFormat(context.getStateFormat());
+            }
+            if (context.isTrustModificationTime()) {
+                settingsManager.setTrustModificationTime(true);
+                // The initial State hashed the content of all the files
+                settingsManager.setLastFullRehashTimestamp(System.currentTimeMillis());
+            }
             settingsManager.save();
 
-            Logger.warning(String.format("Global hash mode set to '%s'%n", hashModeToString(context.getHashMode())));
+            if (context.getHashMode() != hashAll) {
+                Logger.warning(String.format("Global hash mode set to '%s'%n", hashModeToString(context.getHashMode())));
+            }
+            if (context.isTrustModificationTime()) {
+                Logger.info(String.format("The hash of unchanged files will be reused. All the files will be hashed again every %d days%n",
+                        settingsManager.getFullRehashIntervalDays()));
+            }
         }
     }
 }
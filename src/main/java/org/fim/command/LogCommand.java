@@ -20,6 +20,7 @@
 package org.fim.command;
 
 import org.fim.internal.StateManager;
+import org.fim.model.CompareResult;
 import org.fim.model.Context;
 import org.fim.model.LogEntry;
 import org.fim.model.LogResult;
@@ -59,8 +60,9 @@ public class LogCommand extends AbstractCommand {
         for (int stateNumber = 1; stateNumber <= lastStateNumber; stateNumber++) {
             Path statFile = stateManager.getStateFile(stateNumber);
             if (Files.exists(statFile)) {
-                State state = stateManager.loadState(stateNumber, false);
-                LogEntry logEntry = new LogEntry(context, state, stateNumber);
+                CompareResult compareResult = new CompareResult(context, null);
+                State state = stateManager.loadStateHeader(stateNumber, compareResult::addFileState);
+                LogEntry logEntry = new LogEntry(state, stateNumber, compareResult);
 
                 logEntry.displayEntryHeader();
                 Logger.newLine();
@@ -21,10 +21,12 @@ package org.fim.command;
 
 import org.fim.command.exception.BadFimUsageException;
 import org.fim.command.exception.DontWantToContinueException;
+import org.fim.internal.HashIndex;
 import org.fim.internal.StateGenerator;
 import org.fim.internal.StateManager;
 import org.fim.model.Command;
 import org.fim.model.Context;
+import org.fim.model.DeduplicationMode;
 import org.fim.model.DuplicateResult;
 import org.fim.model.FileHash;
 import org.fim.model.FileState;
@@ -32,6 +34,7 @@ import org.fim.model.HashMode;
 import org.fim.model.State;
 import org.fim.util.Logger;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -40,6 +43,9 @@ import java.util.Map;
 
 import static org.atteo.evo.inflector.English.plural;
 import static org.fim.model.HashMode.hashMediumBlock;
+import static org.fim.util.FileUtil.byteCountToDisplaySize;
+import static org.fim.util.FileUtil.isLastLink;
+import static org.fim.util.FileUtil.linkFile;
 import static org.fim.util.FileUtil.removeFile;
 import static org.fim.util.HashModeUtil.hashModeToString;
 
@@ -111,26 +117,80 @@ public class RemoveDuplicatesCommand extends AbstractCommand {
         Logger.info(String.format("Searching for duplicate files using the %s directory as master", context.getMasterFimRepositoryDir()));
         Logger.newLine();
 
-        State masterState = new StateManager(context).loadLastState();
-        Map<FileHash, FileState> masterFilesHash = buildFileHashMap(masterState);
+        try (HashIndex hashIndex = new HashIndex(context)) {
+            MasterFileFinder masterFileFinder;
+            if (isHashIndexUsable(context, hashIndex)) {
+                Logger.info(String.format("Using the hash index of the master directory, made of %d %s",
+                        hashIndex.getEntryCount(), pluralForLong("file", hashIndex.getEntryCount())));
+                // Hash the local files like the master ones were
+                context.setHashAlgorithm(hashIndex.getHashAlgorithm());
+                context.setTreeHashSegmentSize(hashIndex.getTreeHashSegmentSize());
+                masterFileFinder = hashIndex::findFileName;
+            } else {
+                State masterState = new StateManager(context).loadLastState();
+                // Hash the local files like the master ones were
+                context.setHashAlgorithm(masterState.getHashAlgorithm());
+                context.setTreeHashSegmentSize(masterState.getTreeHashSegmentSize());
+                Map<FileHash, FileState> masterFilesHash = buildFileHashMap(masterState);
+                masterFileFinder = localFileState -> {
+                    FileState masterFileState = masterFilesHash.get(localFileState.getFileHash());
+                    return masterFileState != null ? masterFileState.getFileName() : null;
+                };
+            }
+            return removeDuplicates(context, masterFimRepository, normalizedCurrentDir, masterFileFinder);
+        }
+    }
+
+    /**
+     * The index can be used only if it was built from the last State of the master, hashed like the local files will be.
+     */
+    private boolean isHashIndexUsable(Context context, HashIndex hashIndex) {
+        try {
+            return hashIndex.open() &&
+                   hashIndex.getStateNumber() == new StateManager(context).getLastStateNumber() &&
+                   hashIndex.getHashMode() == context.getHashMode();
+        } catch (IOException | RuntimeException ex) {
+            Logger.warning(String.format("Cannot use the hash index of the master directory: %s", ex.getMessage()));
+            return false;
+        }
+    }
+
+    private long removeDuplicates(Context context, Path masterFimRepository, Path normalizedCurrentDir, MasterFileFinder masterFileFinder)
+            throws Exception {
+        boolean linkDuplicates = context.getDeduplicationMode() != DeduplicationMode.remove;
+        String actionName = linkDuplicates ? "link it" : "remove it";
+        String actionDone = linkDuplicates ? "linked" : "removed";
 
         long duplicatedFilesCount = 0;
         long totalFilesRemoved = 0;
+        long spaceFreed = 0;
         State localState = new StateGenerator(context).generateState("", context.getCurrentDirectory(), context.getCurrentDirectory());
         for (FileState localFileState : localState.getFileStates()) {
             if (localFileState.getFileLength() == 0) {
                 continue;
             }
 
-            FileState masterFileState = masterFilesHash.get(localFileState.getFileHash());
-            if (masterFileState != null) {
+            String masterFileName = masterFileFinder.findFileName(localFileState);
+            if (masterFileName != null) {
                 duplicatedFilesCount++;
                 Logger.out.printf("'%s' is a duplicate of '%s/%s'%n", localFileState.getFileName(),
-                        context.getMasterFimRepositoryDir(), masterFileState.getFileName());
-                if (confirmAction(context, "remove it")) {
-                    if (removeFile(context, normalizedCurrentDir, localFileState)) {
-                        Logger.out.printf("  '%s' removed%n", localFileState.getFileName());
+                        context.getMasterFimRepositoryDir(), masterFileName);
+                if (confirmAction(context, actionName)) {
+                    // A file having other hard links keeps using its space
+                    boolean lastLink = isLastLink(normalizedCurrentDir.resolve(localFileState.getFileName()));
+                    boolean done;
+                    if (linkDuplicates) {
+                        Path masterFile = masterFimRepository.resolve(masterFileName).toAbsolutePath().normalize();
+                        done = linkFile(context, normalizedCurrentDir, localFileState, masterFile);
+                    } else {
+                        done = removeFile(context, normalizedCurrentDir, localFileState);
+                    }
+                    if (done) {
+                        Logger.out.printf("  '%s' %s%n", localFileState.getFileName(), actionDone);
                         totalFilesRemoved++;
+                        if (lastLink) {
+                            spaceFreed += localFileState.getFileLength();
+                        }
                     }
                 }
             }
@@ -140,13 +200,13 @@ public class RemoveDuplicatesCommand extends AbstractCommand {
             if (duplicatedFilesCount == 0) {
                 Logger.out.println("No duplicate file found");
             } else {
-                Logger.out.printf("Found %d duplicate %s. No files removed%n", duplicatedFilesCount, pluralForLong("file", duplicatedFilesCount));
+                Logger.out.printf("Found %d duplicate %s. No files %s%n", duplicatedFilesCount, pluralForLong("file", duplicatedFilesCount), actionDone);
             }
         } else {
             Logger.newLine();
-            Logger.out.printf("%d duplicate %s found. %d duplicate %s removed%n",
+            Logger.out.printf("%d duplicate %s found. %d duplicate %s %s, %s freed%n",
                     duplicatedFilesCount, pluralForLong("file", duplicatedFilesCount),
-                    totalFilesRemoved, pluralForLong("file", totalFilesRemoved));
+                    totalFilesRemoved, pluralForLong("file", totalFilesRemoved), actionDone, byteCountToDisplaySize(spaceFreed));
         }
         return totalFilesRemoved;
     }
@@ -162,4 +222,12 @@ public class RemoveDuplicatesCommand extends AbstractCommand {
     private String pluralForLong(String word, long count) {
         return plural(word, count > 1 ? 2 : 1);
     }
+
+    @FunctionalInterface
+    private interface MasterFileFinder {
+        /**
+         * @return the name of the master file having the same hash than the local one, or null if there is none
+         */
+        String findFileName(FileState localFileState) throws IOException;
+    }
 }
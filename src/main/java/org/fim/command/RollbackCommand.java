@@ -20,6 +20,7 @@
 package org.fim.command;
 
 import org.fim.internal.StateManager;
+import org.fim.model.CompareResult;
 import org.fim.model.Context;
 import org.fim.model.LogEntry;
 import org.fim.model.State;
@@ -67,6 +68,8 @@ public class RollbackCommand extends AbstractCommand {
             displayStateSummary(context, stateManager, lastStateNumber);
 
             if (confirmAction(context, "remove it")) {
+                // The hash index refers to the removed State. The next commit would reuse its number
+                stateManager.deleteHashIndex();
                 Files.delete(stateFile);
 
                 stateManager.saveLastStateNumber(lastStateNumber - 1);
@@ -76,8 +79,9 @@ public class RollbackCommand extends AbstractCommand {
     }
 
     private void displayStateSummary(Context context, StateManager stateManager, int stateNumber) throws IOException {
-        State state = stateManager.loadState(stateNumber, false);
-        LogEntry logEntry = new LogEntry(context, state, stateNumber);
+        CompareResult compareResult = new CompareResult(context, null);
+        State state = stateManager.loadStateHeader(stateNumber, compareResult::addFileState);
+        LogEntry logEntry = new LogEntry(state, stateNumber, compareResult);
 
         Logger.newLine();
         logEntry.displayEntryHeader();
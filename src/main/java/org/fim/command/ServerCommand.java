@@ -0,0 +1,64 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.command;
+
+import org.fim.command.exception.BadFimUsageException;
+import org.fim.model.Context;
+import org.fim.server.FimClient;
+import org.fim.server.FimServer;
+import org.fim.util.Logger;
+
+public class ServerCommand extends AbstractCommand {
+    @Override
+    public String getCmdName() {
+        return "server";
+    }
+
+    @Override
+    public String getShortCmdName() {
+        return "";
+    }
+
+    @Override
+    public String getDescription() {
+        return """
+                Keep running and execute the commands sent by the 'fim' script, avoiding the JVM startup of each one.
+                                                Listen on the socket set by FIM_SERVER_SOCKET, '~/.fim-server.sock' by default""";
+    }
+
+    @Override
+    public FimReposConstraint getFimReposConstraint() {
+        return FimReposConstraint.DONT_CARE;
+    }
+
+    @Override
+    public Object execute(Context context) throws Exception {
+        FimServer server = new FimServer(FimClient.getDefaultSocketFile());
+        if (!server.start()) {
+            Logger.error(String.format("A Fim server is already listening on '%s'", server.getSocketFile()));
+            throw new BadFimUsageException();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+
+        Logger.info(String.format("Listening on '%s'", server.getSocketFile()));
+        server.serve();
+        return null;
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.fim.command;
 
+import org.fim.internal.SettingsManager;
 import org.fim.internal.StateComparator;
 import org.fim.internal.StateGenerator;
 import org.fim.internal.StateManager;
@@ -48,8 +49,12 @@ public class StatusCommand extends AbstractCommand {
     public Object execute(Context context) throws Exception {
         checkHashMode(context, Option.ALLOW_COMPATIBLE);
 
-        State currentState = new StateGenerator(context).generateState("", context.getRepositoryRootDir(), context.getCurrentDirectory());
         State lastState = new StateManager(context).loadLastState();
+        StateGenerator generator = new StateGenerator(context);
+        if (isHashReuseAllowed(context, new SettingsManager(context))) {
+            generator.setPreviousState(lastState);
+        }
+        State currentState = generateCurrentState(context, generator, lastState, "");
 
         if (context.isInvokedFromSubDirectory()) {
             lastState = lastState.filterDirectory(context.getRepositoryRootDir(), context.getCurrentDirectory(), true);
@@ -0,0 +1,70 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.command;
+
+import org.fim.command.exception.BadFimUsageException;
+import org.fim.internal.ChangeJournal;
+import org.fim.internal.ChangeWatcher;
+import org.fim.model.Context;
+import org.fim.util.Logger;
+
+import static org.atteo.evo.inflector.English.plural;
+
+public class WatchCommand extends AbstractCommand {
+    @Override
+    public String getCmdName() {
+        return "watch";
+    }
+
+    @Override
+    public String getShortCmdName() {
+        return "";
+    }
+
+    @Override
+    public String getDescription() {
+        return """
+                Keep running and journal the files that are modified, so that status and commit scan only them.
+                                                The journal is used only with '--trust-mtime', as it does not see the bit rot
+                                                nor the changes made to a network share by another computer.
+                                                Stop it with Ctrl+C""";
+    }
+
+    @Override
+    public Object execute(Context context) throws Exception {
+        if (context.isInvokedFromSubDirectory()) {
+            Logger.error("The whole repository must be watched. Run it from the repository root directory");
+            throw new BadFimUsageException();
+        }
+
+        ChangeWatcher watcher = new ChangeWatcher(context);
+        if (!watcher.start()) {
+            Logger.error("The repository is already watched");
+            throw new BadFimUsageException();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(watcher::close));
+
+        int directoryCount = watcher.getWatchedDirectoryCount();
+        Logger.info(String.format("Watching %d %s. The changes are journaled into '%s'", directoryCount, plural("directory", directoryCount),
+                context.getRepositoryDotFimDir().resolve(ChangeJournal.JOURNAL_FILE)));
+        watcher.waitUntilStopped();
+        return null;
+    }
+}
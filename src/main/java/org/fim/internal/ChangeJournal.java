@@ -0,0 +1,322 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.fim.model.Context;
+import org.fim.util.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.fim.model.Constants.SIZE_1_MB;
+import static org.fim.util.FileUtil.byteCountToDisplaySize;
+
+/**
+ * Journal of the paths changed since a State, written by 'fim watch' into the .fim directory. Each line is either:
+ * <ul>
+ * <li>'C path': a file or a directory that was created, modified or deleted, relative to the repository root</li>
+ * <li>'O': some changes were lost</li>
+ * <li>'B stateNumber offset': the lines written from this byte offset contain all the changes made since this State</li>
+ * </ul>
+ * The first line 'G generation' identifies the journal. Each watcher starts a new journal, so that a commit started with a previous one
+ * cannot mark its base into the new one.
+ * The watcher holds a lock on the lock file while it runs. Without it changes can be missed, so the journal is not used.
+ */
+public class ChangeJournal {
+    public static final String JOURNAL_FILE = "journal";
+    public static final String LOCK_FILE = "watch.lock";
+
+    private static final long MAX_JOURNAL_SIZE = 512L * SIZE_1_MB;
+    private static final long COMPACTION_SIZE = 16L * SIZE_1_MB;
+
+    private final Path journalFile;
+    private final Path lockFile;
+    private long compactionSize = COMPACTION_SIZE;
+
+    public ChangeJournal(Context context) {
+        this.journalFile = context.getRepositoryDotFimDir().resolve(JOURNAL_FILE);
+        this.lockFile = context.getRepositoryDotFimDir().resolve(LOCK_FILE);
+    }
+
+    public Path getJournalFile() {
+        return journalFile;
+    }
+
+    public Path getLockFile() {
+        return lockFile;
+    }
+
+    /**
+     * @return the generation of the journal and the offset where the next changed paths will be written
+     */
+    public Position getPosition() {
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            return new Position(readGeneration(channel), channel.size());
+        } catch (IOException ex) {
+            return new Position(null, 0);
+        }
+    }
+
+    public boolean isWatcherRunning() {
+        if (!Files.exists(lockFile)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException ex) {
+            // The lock is held by a watcher running in this JVM
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Replace the journal with a new one that cannot be used, until the watcher found the paths changed since the last State.
+     */
+    public void invalidate() throws IOException {
+        replace(new StringBuilder("O\n"));
+    }
+
+    /**
+     * Start a new journal that contains the paths changed since the State.
+     */
+    public void reset(Collection<String> changedPaths, int stateNumber) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        changedPaths.forEach(path -> appendChangedPath(builder, path));
+        builder.append("B ").append(stateNumber).append(" 0\n");
+        replace(builder);
+    }
+
+    /**
+     * The new journal is written aside and renamed, so that a writer that already opened the previous one keeps writing into it.
+     */
+    private void replace(StringBuilder lines) throws IOException {
+        String content = "G " + UUID.randomUUID() + "\n" + lines;
+        Path tempFile = journalFile.resolveSibling(JOURNAL_FILE + ".tmp");
+        Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+        Files.move(tempFile, journalFile, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void writeChangedPaths(Collection<String> changedPaths) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        changedPaths.forEach(path -> appendChangedPath(builder, path));
+        append(builder);
+    }
+
+    public void markOverflow() throws IOException {
+        append("O\n");
+    }
+
+    /**
+     * Record that the paths journaled from the offset are all the changes made since the State.
+     * The offset is taken before scanning the files, so that the changes made during the scan are kept.
+     */
+    public void markBase(int stateNumber, Position position) throws IOException {
+        if (position.generation() == null || !Files.exists(journalFile)) {
+            return;
+        }
+
+        // The generation is read once the journal is opened to write. If it did not change, no new journal replaced the opened one
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             FileChannel readChannel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            if (!position.generation().equals(readGeneration(readChannel)) || position.offset() > channel.size()) {
+                // The journal was started again by a new watcher
+                return;
+            }
+            channel.write(ByteBuffer.wrap(("B " + stateNumber + " " + position.offset() + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * @return the paths changed since the State, or null if the journal does not contain all of them
+     */
+    public Set<String> getChangedPathsSince(int stateNumber) throws IOException {
+        if (!isWatcherRunning()) {
+            return null;
+        }
+
+        byte[] content;
+        try {
+            if (Files.size(journalFile) > MAX_JOURNAL_SIZE) {
+                Logger.warning(String.format("The change journal is bigger than %s. Scanning all the files", byteCountToDisplaySize(MAX_JOURNAL_SIZE)));
+                return null;
+            }
+            content = Files.readAllBytes(journalFile);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+
+        Base base = findLastBase(content);
+        if (base == null || base.stateNumber() != stateNumber) {
+            return null;
+        }
+        Set<String> changedPaths = readChangedPaths(content, base.offset());
+        if (changedPaths == null) {
+            Logger.info("Some changes were not journaled by 'fim watch'. Scanning all the files");
+        }
+        return changedPaths;
+    }
+
+    /**
+     * Rewrite the journal from its last base once it gets large, keeping each changed path once,
+     * so that it does not grow as long as the watcher runs.
+     * Called by the watcher, the only writer of the changed paths. A commit running meanwhile cannot mark its base into the new journal,
+     * so the changes are taken from the journal again after the next commit.
+     */
+    public void compactIfLarge() throws IOException {
+        long size;
+        try {
+            size = Files.size(journalFile);
+        } catch (NoSuchFileException ex) {
+            return;
+        }
+        if (size < compactionSize) {
+            return;
+        }
+
+        Base base = null;
+        Set<String> changedPaths = null;
+        if (size <= MAX_JOURNAL_SIZE) {
+            byte[] content = Files.readAllBytes(journalFile);
+            base = findLastBase(content);
+            changedPaths = base != null ? readChangedPaths(content, base.offset()) : null;
+        }
+        if (changedPaths == null) {
+            invalidate();
+        } else {
+            reset(changedPaths, base.stateNumber());
+        }
+        compactionSize = Math.max(COMPACTION_SIZE, 2 * Files.size(journalFile));
+    }
+
+    /**
+     * @return the last base of the journal, or null if there is none
+     */
+    private static Base findLastBase(byte[] content) {
+        Base base = null;
+        for (int start = 0, end; (end = nextLineEnd(content, start)) >= 0; start = end + 1) {
+            String line = new String(content, start, end - start, StandardCharsets.UTF_8);
+            if (line.startsWith("B ")) {
+                String[] fields = line.split(" ");
+                base = new Base(Integer.parseInt(fields[1]), Long.parseLong(fields[2]));
+            }
+        }
+        return base;
+    }
+
+    /**
+     * @return the paths journaled from the offset, or null if some changes were lost
+     */
+    private static Set<String> readChangedPaths(byte[] content, long offset) {
+        Set<String> changedPaths = new HashSet<>();
+        // A line written while reading the journal is not complete. It is skipped as it was changed after the start of the scan
+        for (int start = (int) offset, end; (end = nextLineEnd(content, start)) >= 0; start = end + 1) {
+            String line = new String(content, start, end - start, StandardCharsets.UTF_8);
+            if (line.equals("O")) {
+                return null;
+            } else if (line.startsWith("C ")) {
+                changedPaths.add(decode(line.substring(2)));
+            }
+        }
+        return changedPaths;
+    }
+
+    private void append(CharSequence lines) throws IOException {
+        // Written with one call, so that the lines of a concurrent writer cannot be interleaved with these ones
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static String readGeneration(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // Read until the buffer is full or the end of the file
+        }
+        byte[] content = Arrays.copyOf(buffer.array(), buffer.position());
+        int end = nextLineEnd(content, 0);
+        if (end < 0) {
+            return null;
+        }
+        String line = new String(content, 0, end, StandardCharsets.UTF_8);
+        return line.startsWith("G ") ? line.substring(2) : null;
+    }
+
+    private static int nextLineEnd(byte[] content, int start) {
+        for (int index = start; index < content.length; index++) {
+            if (content[index] == '\n') {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendChangedPath(StringBuilder builder, String path) {
+        builder.append("C ").append(encode(path)).append('\n');
+    }
+
+    /**
+     * Where the journal was when a scan started.
+     */
+    public record Position(String generation, long offset) {
+    }
+
+    private record Base(int stateNumber, long offset) {
+    }
+
+    static String encode(String path) {
+        return path.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    static String decode(String encodedPath) {
+        StringBuilder builder = new StringBuilder(encodedPath.length());
+        for (int index = 0; index < encodedPath.length(); index++) {
+            char c = encodedPath.charAt(index);
+            if (c == '\\' && index + 1 < encodedPath.length()) {
+                index++;
+                builder.append(encodedPath.charAt(index) == 'n' ? '\n' : encodedPath.charAt(index));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.fim.model.Context;
+import org.fim.model.FileState;
+import org.fim.model.State;
+import org.fim.util.FileUtil;
+import org.fim.util.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.fim.model.HashMode.dontHash;
+import static org.fim.model.Modification.deleted;
+import static org.fim.util.FileStateUtil.buildFileNamesMap;
+
+/**
+ * Watch all the directories of the repository and journal the changed paths into the {@link ChangeJournal},
+ * so that the status and commit commands scan only them.
+ */
+public class ChangeWatcher implements Closeable {
+    private static final long FLUSH_INTERVAL_MS = 100;
+    private static final int MAX_PENDING_PATHS = 10_000;
+
+    private final Context context;
+    private final ChangeJournal journal;
+    private final Path rootDir;
+    private final String normalizedRootDir;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, WatchKey> directoryKeys = new HashMap<>();
+    private final Set<String> pendingPaths = new LinkedHashSet<>();
+
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private WatchService watchService;
+    private Thread watchThread;
+    private volatile boolean running;
+    private boolean overflowed;
+
+    public ChangeWatcher(Context context) {
+        this.context = context;
+        this.journal = new ChangeJournal(context);
+        this.rootDir = context.getRepositoryRootDir();
+        this.normalizedRootDir = FileUtil.getNormalizedFileName(rootDir);
+    }
+
+    /**
+     * Watch all the directories, then journal the files that changed since the last State.
+     * The directories are watched first, so that the changes made during the scan are journaled too.
+     *
+     * @return false if another watcher is already running on this repository
+     */
+    public boolean start() throws IOException, NoSuchAlgorithmException {
+        if (!acquireLock()) {
+            return false;
+        }
+
+        try {
+            // The journal left by a previous watcher misses the changes made since it stopped. It must not be used during the scan
+            journal.invalidate();
+
+            watchService = FileSystems.getDefault().newWatchService();
+            registerAll(rootDir);
+
+            StateManager manager = new StateManager(context);
+            int lastStateNumber = manager.getLastStateNumber();
+            journal.reset(findChangedFiles(manager.loadLastState()), lastStateNumber);
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+
+        running = true;
+        watchThread = new Thread(this::watch, "fim-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getWatchedDirectoryCount() {
+        return watchedDirectories.size();
+    }
+
+    public void waitUntilStopped() throws InterruptedException {
+        if (watchThread != null) {
+            watchThread.join();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+            if (watchThread != null) {
+                watchThread.join();
+            }
+        } catch (IOException | InterruptedException ex) {
+            Logger.error("Error stopping to watch the repository", ex, context.isDisplayStackTrace());
+        }
+        releaseLock();
+    }
+
+    /**
+     * Once the lock is released, the journal is no more used.
+     */
+    private synchronized void releaseLock() {
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+            if (lockChannel != null) {
+                lockChannel.close();
+            }
+        } catch (IOException ex) {
+            Logger.error("Error releasing the lock of the change journal", ex, context.isDisplayStackTrace());
+        } finally {
+            lock = null;
+            lockChannel = null;
+        }
+    }
+
+    private boolean acquireLock() throws IOException {
+        lockChannel = FileChannel.open(journal.getLockFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            lockChannel = null;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compare the size, dates and attributes of the files with the ones of the last State, without hashing them.
+     */
+    private Set<String> findChangedFiles(State lastState) throws NoSuchAlgorithmException {
+        Context scanContext = context.clone();
+        scanContext.setHashMode(dontHash);
+        scanContext.setThreadCount(1);
+        scanContext.setUseDynamicScaling(false);
+        State currentState = new StateGenerator(scanContext).generateState("", rootDir, rootDir);
+
+        List<FileState> lastFileStates = new ArrayList<>(lastState.getFileStates());
+        lastFileStates.removeIf(fileState -> fileState.getModification() == deleted);
+        Map<String, FileState> lastFileStateMap = buildFileNamesMap(lastFileStates);
+
+        Set<String> changedFiles = new LinkedHashSet<>();
+        for (FileState fileState : currentState.getFileStates()) {
+            FileState lastFileState = lastFileStateMap.remove(fileState.getFileName());
+            if (lastFileState == null || lastFileState.getFileLength() != fileState.getFileLength() ||
+                !lastFileState.getFileTime().equals(fileState.getFileTime()) ||
+                !Objects.equals(lastFileState.getFileAttributes(), fileState.getFileAttributes())) {
+                changedFiles.add(fileState.getFileName());
+            }
+        }
+        changedFiles.addAll(lastFileStateMap.keySet());
+        return changedFiles;
+    }
+
+    private void watch() {
+        long lastFlush = System.currentTimeMillis();
+        try {
+            while (running) {
+                WatchKey key = watchService.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    processEvents(key);
+                }
+
+                long now = System.currentTimeMillis();
+                if (key == null || now - lastFlush >= FLUSH_INTERVAL_MS || pendingPaths.size() >= MAX_PENDING_PATHS) {
+                    flush();
+                    lastFlush = now;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ex) {
+            // The watcher is closed
+        } catch (IOException ex) {
+            // Some directories are no more watched, so the journal cannot be trusted anymore
+            Logger.error("Stop watching the repository", ex, context.isDisplayStackTrace());
+            running = false;
+            releaseLock();
+        }
+    }
+
+    private void processEvents(WatchKey key) throws IOException {
+        Path directory = watchedDirectories.get(key);
+        if (directory == null) {
+            key.cancel();
+            return;
+        }
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflowed = true;
+                continue;
+            }
+
+            Path file = directory.resolve((Path) event.context());
+            boolean isDirectory = Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS);
+            if (event.kind() == ENTRY_MODIFY && isDirectory) {
+                // Only the files are part of the States
+                continue;
+            }
+            if (isDirectory && FimIgnoreManager.IGNORED_DIRECTORIES.contains(file.getFileName().toString())) {
+                continue;
+            }
+
+            if (event.kind() == ENTRY_CREATE && isDirectory) {
+                // The files created into it before it is watched are found when scanning this new directory
+                registerAll(file);
+            } else if (event.kind() == ENTRY_DELETE) {
+                unregisterAll(file);
+            }
+            pendingPaths.add(FileUtil.getRelativeFileName(normalizedRootDir, FileUtil.getNormalizedFileName(file)));
+        }
+
+        if (!key.reset()) {
+            directoryKeys.remove(watchedDirectories.remove(key));
+        }
+    }
+
+    private void flush() throws IOException {
+        if (overflowed) {
+            Logger.warning("Too many changes to watch. The next status or commit will scan all the files");
+            journal.markOverflow();
+            overflowed = false;
+        }
+        if (!pendingPaths.isEmpty()) {
+            journal.writeChangedPaths(pendingPaths);
+            pendingPaths.clear();
+        }
+        journal.compactIfLarge();
+    }
+
+    private void registerAll(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                if (!dir.equals(rootDir) && FimIgnoreManager.IGNORED_DIRECTORIES.contains(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key;
+                try {
+                    key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                } catch (NoSuchFileException ex) {
+                    // Deleted while walking the tree
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                watchedDirectories.put(key, dir);
+                directoryKeys.put(dir, key);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                // Deleted while walking the tree
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * A moved directory keeps its watch. Stop it, so that its events are not reported with the old path.
+     */
+    private void unregisterAll(Path directory) {
+        if (!directoryKeys.containsKey(directory)) {
+            return;
+        }
+
+        List<Path> watchedSubDirectories = directoryKeys.keySet().stream().filter(dir -> dir.startsWith(directory)).toList();
+        for (Path dir : watchedSubDirectories) {
+            WatchKey key = directoryKeys.remove(dir);
+            watchedDirectories.remove(key);
+            key.cancel();
+        }
+    }
+}
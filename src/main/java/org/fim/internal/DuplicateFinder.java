@@ -26,15 +26,21 @@ import org.fim.model.FileHash;
 import org.fim.model.FilePattern;
 import org.fim.model.FileState;
 import org.fim.model.State;
+import org.fim.util.FileOperationInterruptedException;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class DuplicateFinder {
     private static final Comparator<FileState> HASH_COMPARATOR = new FileState.HashComparator();
+    private static final int EXISTS_CHECK_BATCH_SIZE = 1_000;
+    private static final int EXISTS_CHECK_PARALLELISM = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
 
     private final Context context;
 
@@ -46,38 +52,92 @@ public class DuplicateFinder {
         DuplicateResult result = new DuplicateResult(context);
 
         List<FileState> fileStates = new ArrayList<>(state.getFileStates());
+        fileStates.removeIf(fileState -> fileState.getFileLength() == 0 || !isSelected(fileState));
         fileStates.sort(HASH_COMPARATOR);
 
+        // Group the files first, so that only the ones having a duplicate are checked to still exist
+        List<List<FileState>> candidateSets = new ArrayList<>();
         List<FileState> duplicatedFiles = new ArrayList<>();
         long previousFileLength = 0;
         FileHash previousFileHash = new FileHash(Constants.NO_HASH, Constants.NO_HASH, Constants.NO_HASH);
         for (FileState fileState : fileStates) {
-            if (fileState.getFileLength() == 0) {
-                continue;
-            }
-
-            Path file = context.getRepositoryRootDir().resolve(fileState.getFileName());
-            if (!Files.exists(file)) {
-                continue;
-            }
-            String fileName = file.getFileName().toString();
-            if (!FilePattern.matchPatterns(fileName, context.getIncludePatterns(), true) ||
-                FilePattern.matchPatterns(fileName, context.getExcludePatterns(), false)) {
-                continue;
-            }
-
             if (previousFileLength != fileState.getFileLength() || !previousFileHash.equals(fileState.getFileHash())) {
-                result.addDuplicatedFiles(duplicatedFiles);
-                duplicatedFiles.clear();
+                addCandidateSet(candidateSets, duplicatedFiles);
+                duplicatedFiles = new ArrayList<>();
             }
 
             previousFileLength = fileState.getFileLength();
             previousFileHash = fileState.getFileHash();
             duplicatedFiles.add(fileState);
         }
-        result.addDuplicatedFiles(duplicatedFiles);
+        addCandidateSet(candidateSets, duplicatedFiles);
+
+        boolean[] missingFiles = findMissingFiles(candidateSets);
+        int index = 0;
+        for (List<FileState> candidateSet : candidateSets) {
+            List<FileState> existingFiles = new ArrayList<>(candidateSet.size());
+            for (FileState fileState : candidateSet) {
+                if (!missingFiles[index++]) {
+                    existingFiles.add(fileState);
+                }
+            }
+            result.addDuplicatedFiles(existingFiles);
+        }
 
         result.sortDuplicateSets();
         return result;
     }
+
+    private boolean isSelected(FileState fileState) {
+        String fileName = context.getRepositoryRootDir().resolve(fileState.getFileName()).getFileName().toString();
+        return FilePattern.isSelected(fileName, context.getIncludePatterns(), context.getExcludePatterns());
+    }
+
+    private void addCandidateSet(List<List<FileState>> candidateSets, List<FileState> duplicatedFiles) {
+        if (duplicatedFiles.size() > 1) {
+            candidateSets.add(duplicatedFiles);
+        }
+    }
+
+    /**
+     * Check by batches in parallel which files of the candidate sets no longer exist.
+     *
+     * @return for each candidate, in the order of the candidate sets, true if the file is missing.
+     */
+    private boolean[] findMissingFiles(List<List<FileState>> candidateSets) {
+        List<FileState> candidates = new ArrayList<>();
+        candidateSets.forEach(candidates::addAll);
+
+        boolean[] missingFiles = new boolean[candidates.size()];
+        if (candidates.isEmpty()) {
+            return missingFiles;
+        }
+
+        Path rootDir = context.getRepositoryRootDir();
+        List<Callable<Void>> batches = new ArrayList<>();
+        for (int batchStart = 0; batchStart < candidates.size(); batchStart += EXISTS_CHECK_BATCH_SIZE) {
+            int start = batchStart;
+            int end = Math.min(start + EXISTS_CHECK_BATCH_SIZE, candidates.size());
+            batches.add(() -> {
+                for (int index = start; index < end; index++) {
+                    missingFiles[index] = !Files.exists(rootDir.resolve(candidates.get(index).getFileName()));
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(EXISTS_CHECK_PARALLELISM, batches.size()));
+        try {
+            // Each batch writes its own range of the array, and invokeAll() returns once they are all done
+            executorService.invokeAll(batches);
+        } catch (InterruptedException ex) {
+            // The missing files are unknown, so no duplicate set can be trusted
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new FileOperationInterruptedException("Interrupted while checking that the duplicated files exist");
+        } finally {
+            executorService.shutdown();
+        }
+        return missingFiles;
+    }
 }
@@ -19,21 +19,23 @@
 
 package org.fim.internal;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.fim.model.Context;
 import org.fim.model.DuplicateResult;
 import org.fim.model.DuplicateSet;
 import org.fim.model.FileState;
-import org.fim.model.output.DuplicatedFile;
-import org.fim.model.output.DuplicatedFiles;
 import org.fim.util.JsonIO;
+import org.fim.util.JsonPrettyPrinter;
 import org.fim.util.Logger;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
+/**
+ * Output the duplicates set by set, without building another representation of them, so that the first ones are output right away.
+ * Logger.out is flushed but never closed.
+ */
 public class DuplicateOutputGenerator {
     private final Context context;
 
@@ -42,36 +44,17 @@ public class DuplicateOutputGenerator {
     }
 
     public void generate(DuplicateResult duplicateResult) {
-        List<DuplicatedFiles> duplicates = generateDuplicatedFiles(duplicateResult);
         switch (context.getOutputType()) {
-            case csv -> generateCSV(duplicates);
-            case json -> generateJson(duplicates);
-            case human -> generateHuman(duplicates);
+            case csv -> generateCSV(duplicateResult);
+            case json -> generateJson(duplicateResult);
+            case human -> generateHuman(duplicateResult);
         }
     }
 
-    private void generateHuman(List<DuplicatedFiles> duplicates) {
+    private void generateHuman(DuplicateResult duplicateResult) {
         throw new UnsupportedOperationException("Not implemented yet");
     }
 
-    private List<DuplicatedFiles> generateDuplicatedFiles(DuplicateResult duplicateResult) {
-        List<DuplicatedFiles> duplicateList = new ArrayList<>();
-        for (DuplicateSet duplicateSet : duplicateResult.getDuplicateSets()) {
-            DuplicatedFiles duplicatedFiles = new DuplicatedFiles();
-            duplicatedFiles.setWastedSpace(duplicateSet.getWastedSpace());
-            for (FileState fileState : duplicateSet.getDuplicatedFiles()) {
-                DuplicatedFile file = new DuplicatedFile();
-                file.setName(fileState.getFileName());
-                file.setLength(fileState.getFileLength());
-                file.setPath(getPath(fileState.getFileName()));
-                file.setType(getExtension(fileState.getFileName()));
-                duplicatedFiles.getFileList().add(file);
-            }
-            duplicateList.add(duplicatedFiles);
-        }
-        return duplicateList;
-    }
-
     private String getPath(String fileName) {
         int index = fileName.lastIndexOf("/");
         if (index == -1) {
@@ -88,19 +71,22 @@ public class DuplicateOutputGenerator {
         return fileName.substring(index + 1).toLowerCase();
     }
 
-    private void generateCSV(List<DuplicatedFiles> duplicates) {
+    private void generateCSV(DuplicateResult duplicateResult) {
         CSVFormat format = CSVFormat.DEFAULT.builder()
                 .setHeader("SetIndex", "FileIndex", "WastedSpace", "FilePath", "FileName", "FileLength", "FileType")
                 .build();
-        try (CSVPrinter csvPrinter = new CSVPrinter(Logger.out, format)) {
+        try {
+            // Not closed, as it would close Logger.out
+            CSVPrinter csvPrinter = new CSVPrinter(Logger.out, format);
             int setIndex = 0;
-            for (DuplicatedFiles files : duplicates) {
+            for (DuplicateSet duplicateSet : duplicateResult.getDuplicateSets()) {
                 setIndex++;
                 int fileIndex = 0;
-                for (DuplicatedFile file : files.getFileList()) {
+                for (FileState fileState : duplicateSet.getDuplicatedFiles()) {
                     fileIndex++;
-                    csvPrinter.printRecord(setIndex, fileIndex, files.getWastedSpace(), file.getPath(), file.getName(), file.getLength(),
-                            file.getType());
+                    String fileName = fileState.getFileName();
+                    csvPrinter.printRecord(setIndex, fileIndex, duplicateSet.getWastedSpace(), getPath(fileName), fileName, fileState.getFileLength(),
+                            getExtension(fileName));
                 }
             }
             csvPrinter.flush();
@@ -109,13 +95,33 @@ public class DuplicateOutputGenerator {
         }
     }
 
-    private void generateJson(List<DuplicatedFiles> duplicates) {
+    private void generateJson(DuplicateResult duplicateResult) {
         JsonIO jsonIO = new JsonIO();
-        try {
-            jsonIO.getObjectWriter().writeValue(Logger.out, duplicates);
-            Logger.out.println();
+        try (JsonGenerator generator = jsonIO.getObjectMapper().getFactory().createGenerator(Logger.out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setPrettyPrinter(new JsonPrettyPrinter());
+
+            generator.writeStartArray();
+            for (DuplicateSet duplicateSet : duplicateResult.getDuplicateSets()) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("fileList");
+                for (FileState fileState : duplicateSet.getDuplicatedFiles()) {
+                    String fileName = fileState.getFileName();
+                    generator.writeStartObject();
+                    generator.writeStringField("path", getPath(fileName));
+                    generator.writeStringField("name", fileName);
+                    generator.writeNumberField("length", fileState.getFileLength());
+                    generator.writeStringField("type", getExtension(fileName));
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+                generator.writeNumberField("wastedSpace", duplicateSet.getWastedSpace());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
         } catch (IOException ex) {
             Logger.error("Error displaying duplicates in JSON format", ex, context.isDisplayStackTrace());
         }
+        Logger.out.println();
     }
 }
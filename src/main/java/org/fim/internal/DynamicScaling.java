@@ -26,34 +26,81 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * DynamicScaling adjusts the number of threads used for file processing based on observed throughput.
- * It increases the thread count as long as throughput continues to improve and stabilizes.
+ * DynamicScaling adjusts the number of FileHashers based on the observed throughput.
+ * It is a hill climber over a smoothed throughput. It adds threads while this improves the throughput,
+ * and retires the thread that did not help once the disk is saturated.
+ * When stable, it probes alternately one thread more and one thread less, as the best count changes with the files being hashed.
+ * A probe that does not lose throughput with one thread less keeps going down, so that seeking disks end up with fewer threads.
  */
 public class DynamicScaling {
+    private static final int MEASUREMENT_INTERVAL_MS = 250;
+    private static final double SMOOTHING_FACTOR = 0.5; // Weight of the last measurement in the smoothed throughput
+    private static final double THROUGHPUT_THRESHOLD_UP = 0.05; // 5% improvement required to keep an added thread
+    private static final double THROUGHPUT_THRESHOLD_DOWN = 0.10; // 10% loss that makes a retired thread come back
+    private static final int SETTLE_INTERVALS = 1; // Measurements ignored after a change, while the threads ramp up or down
+    private static final int PROBE_INTERVALS = 20; // Measurements at a stable thread count before probing again
+
     private final Context context;
     private final int minThreads;
     private final int maxThreads;
     private final AtomicInteger currentThreads;
+    private final AtomicInteger pendingRetirements;
     private final AtomicLong volumeProcessed;
     private final AtomicLong lastMeasurementTime;
-    private volatile double lastThroughput; // files per second
-    private static final int MEASUREMENT_INTERVAL_MS = 100; // 100 milliseconds
-    private static final double THROUGHPUT_THRESHOLD_UP = 0.02; // 2% improvement required to scale up
+    private Runnable workerStarter;
+
+    // State of the controller, guarded by this
+    private double smoothedThroughput; // bytes per second
+    private double referenceThroughput; // smoothed throughput before the last change, 0 when not measured yet
+    private int lastStep; // +1 or -1 while climbing in one direction, 0 when stable
+    private int settleIntervals;
+    private int stableIntervals;
+    private boolean probeUp;
+
+    // Metrics
+    private volatile double lastThroughput; // bytes per second
+    private final AtomicInteger scaleUpCount;
+    private final AtomicInteger scaleDownCount;
+    private final AtomicInteger peakThreads;
 
     public DynamicScaling(Context context) {
         this.context = context;
         this.minThreads = 1;
         this.maxThreads = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4); // At least 4, up to CPU cores x 2
-        this.currentThreads = new AtomicInteger(context.getThreadCount() > 0 ? context.getThreadCount() : minThreads);
+        int initialThreads = Math.min(context.getThreadCount() > 0 ? context.getThreadCount() : minThreads, maxThreads);
+        this.currentThreads = new AtomicInteger(initialThreads);
+        this.pendingRetirements = new AtomicInteger(0);
         this.volumeProcessed = new AtomicLong(0);
         this.lastMeasurementTime = new AtomicLong(System.currentTimeMillis());
+        this.workerStarter = () -> {
+        };
+
+        this.smoothedThroughput = 0.0;
+        this.referenceThroughput = 0.0;
+        this.lastStep = 0;
+        this.settleIntervals = 0;
+        this.stableIntervals = PROBE_INTERVALS - 1; // Start by probing up
+        this.probeUp = true;
+
         this.lastThroughput = 0.0;
+        this.scaleUpCount = new AtomicInteger(0);
+        this.scaleDownCount = new AtomicInteger(0);
+        this.peakThreads = new AtomicInteger(initialThreads);
 
-        if (!context.isUseDynamicScaling()) {
+        if (context.isUseDynamicScaling()) {
+            context.setThreadCount(initialThreads);
+        } else {
             Logger.rawDebug("Dynamic scaling is disabled. Using fixed thread count: " + currentThreads.get());
         }
     }
 
+    /**
+     * Set what starts one more FileHasher when scaling up.
+     */
+    public void setWorkerStarter(Runnable workerStarter) {
+        this.workerStarter = workerStarter;
+    }
+
     /**
      * Record that a file has been processed and adjust thread count if necessary.
      */
@@ -62,10 +109,6 @@ public class DynamicScaling {
             return; // No scaling if disabled
         }
 
-        if (context.getThreadCount() == maxThreads) {
-            return; // No scaling if thread count is already at max
-        }
-
         long currentVolume = volumeProcessed.addAndGet(fileSize);
         long currentTime = System.currentTimeMillis();
         long elapsedTime = currentTime - lastMeasurementTime.get();
@@ -77,7 +120,6 @@ public class DynamicScaling {
                 if (elapsedTime >= MEASUREMENT_INTERVAL_MS) {
                     double currentThroughput = (double) currentVolume / (elapsedTime / 1000.0); // bytes per second
                     adjustThreadCount(currentThroughput);
-                    lastThroughput = currentThroughput;
                     lastMeasurementTime.set(currentTime);
                     volumeProcessed.set(0); // Reset counter
                 }
@@ -86,28 +128,134 @@ public class DynamicScaling {
     }
 
     /**
-     * Adjust the thread count based on throughput changes.
+     * Called by a FileHasher before taking the next file.
+     *
+     * @return true if this FileHasher must stop because the thread count was decreased.
      */
-    private void adjustThreadCount(double currentThroughput) {
-        int currentThreadCount = currentThreads.get();
+    public boolean shouldRetire() {
+        int pending;
+        do {
+            pending = pendingRetirements.get();
+            if (pending <= 0) {
+                return false;
+            }
+        } while (!pendingRetirements.compareAndSet(pending, pending - 1));
+        return true;
+    }
 
-        if (lastThroughput == 0.0) {
-            // Initial measurement, no adjustment yet
-            Logger.rawDebug(String.format("Initial throughput: %.2f bytes/sec with %d threads", currentThroughput, currentThreadCount));
+    /**
+     * Adjust the thread count based on the throughput measured during the last interval.
+     */
+    synchronized void adjustThreadCount(double currentThroughput) {
+        lastThroughput = currentThroughput;
+        if (smoothedThroughput == 0.0) {
+            smoothedThroughput = currentThroughput;
+        } else {
+            smoothedThroughput = SMOOTHING_FACTOR * currentThroughput + (1 - SMOOTHING_FACTOR) * smoothedThroughput;
+        }
+
+        if (settleIntervals > 0) {
+            settleIntervals--;
             return;
         }
 
-        double throughputChange = (currentThroughput - lastThroughput) / lastThroughput;
+        if (referenceThroughput == 0.0) {
+            Logger.rawDebug(String.format("Throughput: %.2f bytes/sec with %d threads", smoothedThroughput, currentThreads.get()));
+            referenceThroughput = smoothedThroughput;
+            if (lastStep != 0) {
+                return;
+            }
+        }
 
-        if (throughputChange > THROUGHPUT_THRESHOLD_UP && currentThreadCount < maxThreads) {
-            // Throughput increased significantly, scale up
-            int newThreadCount = Math.min(currentThreadCount + 1, maxThreads);
-            currentThreads.set(newThreadCount);
-            context.setThreadCount(newThreadCount);
-            Logger.rawDebug(String.format("Scaling up to %d threads. Throughput change %.2f", newThreadCount, throughputChange));
+        double throughputChange = (smoothedThroughput - referenceThroughput) / referenceThroughput;
+        if (lastStep > 0) {
+            if (throughputChange > THROUGHPUT_THRESHOLD_UP) {
+                keepClimbing(+1, throughputChange);
+            } else {
+                // The added thread did not help, the disk is saturated
+                revert(-1, throughputChange);
+            }
+        } else if (lastStep < 0) {
+            if (throughputChange < -THROUGHPUT_THRESHOLD_DOWN) {
+                // The retired thread was needed
+                revert(+1, throughputChange);
+            } else {
+                // The same throughput with less threads is better
+                keepClimbing(-1, throughputChange);
+            }
+        } else {
+            stableIntervals++;
+            if (stableIntervals >= PROBE_INTERVALS || throughputChange < -THROUGHPUT_THRESHOLD_DOWN) {
+                probe();
+            }
         }
     }
 
+    private void keepClimbing(int step, double throughputChange) {
+        referenceThroughput = smoothedThroughput;
+        if (!scale(step, String.format("Throughput change %.2f", throughputChange))) {
+            hold();
+        }
+    }
+
+    private void revert(int step, double throughputChange) {
+        scale(step, String.format("Reverting, throughput change %.2f", throughputChange));
+        hold();
+        referenceThroughput = 0.0; // Measure again the throughput of the reverted thread count
+    }
+
+    private void probe() {
+        referenceThroughput = smoothedThroughput;
+        int step = probeUp ? +1 : -1;
+        probeUp = !probeUp;
+        if (!scale(step, "Probing") && !scale(-step, "Probing")) {
+            hold();
+        }
+    }
+
+    private void hold() {
+        lastStep = 0;
+        stableIntervals = 0;
+    }
+
+    private boolean scale(int step, String reason) {
+        int currentThreadCount = currentThreads.get();
+        int newThreadCount = currentThreadCount + step;
+        if (newThreadCount < minThreads || newThreadCount > maxThreads) {
+            return false;
+        }
+
+        currentThreads.set(newThreadCount);
+        context.setThreadCount(newThreadCount);
+        lastStep = step;
+        settleIntervals = SETTLE_INTERVALS;
+        stableIntervals = 0;
+
+        if (step > 0) {
+            scaleUpCount.incrementAndGet();
+            peakThreads.accumulateAndGet(newThreadCount, Math::max);
+            startWorker();
+        } else {
+            scaleDownCount.incrementAndGet();
+            pendingRetirements.incrementAndGet();
+        }
+
+        Logger.rawDebug(String.format("Scaling %s to %d threads. %s. Throughput: %.2f bytes/sec",
+                step > 0 ? "up" : "down", newThreadCount, reason, smoothedThroughput));
+        return true;
+    }
+
+    private void startWorker() {
+        int pending;
+        do {
+            pending = pendingRetirements.get();
+            if (pending <= 0) {
+                workerStarter.run();
+                return;
+            }
+        } while (!pendingRetirements.compareAndSet(pending, pending - 1)); // Cancel a retirement that did not happen yet
+    }
+
     /**
      * Get the current number of threads.
      */
@@ -130,9 +278,37 @@ public class DynamicScaling {
     }
 
     /**
-     * Get the last measured throughput (files per second).
+     * Get the last measured throughput (bytes per second).
      */
     public double getLastThroughput() {
         return lastThroughput;
     }
+
+    /**
+     * Get the smoothed throughput the decisions are based on (bytes per second).
+     */
+    public synchronized double getSmoothedThroughput() {
+        return smoothedThroughput;
+    }
+
+    /**
+     * Get the number of times a thread was added.
+     */
+    public int getScaleUpCount() {
+        return scaleUpCount.get();
+    }
+
+    /**
+     * Get the number of times a thread was retired.
+     */
+    public int getScaleDownCount() {
+        return scaleDownCount.get();
+    }
+
+    /**
+     * Get the highest number of threads used.
+     */
+    public int getPeakThreadCount() {
+        return peakThreads.get();
+    }
 }
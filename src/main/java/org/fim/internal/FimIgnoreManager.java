@@ -34,6 +34,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FimIgnoreManager {
     public static final String DOT_FIM_IGNORE = ".fimignore";
@@ -49,7 +50,8 @@ public class FimIgnoreManager {
     public FimIgnoreManager(Context context) {
         this.context = context;
         this.repositoryRootDirString = FileUtil.getNormalizedFileName(this.context.getRepositoryRootDir());
-        this.ignoredFiles = new HashSet<>();
+        // Filled concurrently by the directory walker
+        this.ignoredFiles = ConcurrentHashMap.newKeySet();
     }
 
     public FimIgnore loadInitialFimIgnore() {
@@ -144,6 +146,6 @@ public class FimIgnoreManager {
     }
 
     public Set<String> getIgnoredFiles() {
-        return ignoredFiles;
+        return new HashSet<>(ignoredFiles);
     }
 }
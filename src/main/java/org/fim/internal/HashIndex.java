@@ -0,0 +1,298 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import com.google.common.base.Utf8;
+import org.fim.model.Context;
+import org.fim.model.FileHash;
+import org.fim.model.FileState;
+import org.fim.model.HashAlgorithm;
+import org.fim.model.HashMode;
+import org.fim.model.State;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.fim.model.Constants.SIZE_1_MB;
+import static org.fim.model.Modification.deleted;
+
+/**
+ * Index of the files of the last State by hash, kept into the .fim directory and updated each time a State is created.
+ * It allows to look for a hash without loading the State. The file contains:
+ * <ul>
+ * <li>a header describing how the State was hashed</li>
+ * <li>the entries sorted by key, each of them made of a 128 bits key computed from the FileHash, the file length and the offset of the file name</li>
+ * <li>the file names</li>
+ * </ul>
+ * The entries are mapped into memory and looked up with a binary search.
+ */
+public class HashIndex implements Closeable {
+    public static final String HASH_INDEX_FILE = "hash_index";
+
+    private static final long MAGIC = 0x46494D4849445831L; // "FIMHIDX1"
+    private static final int ENTRY_SIZE = 4 * Long.BYTES;
+    private static final int ENTRIES_PER_MAPPING = 1 << 25;
+
+    private final Path indexFile;
+    private final MessageDigest keyDigest;
+
+    private FileChannel channel;
+    private MappedByteBuffer[] mappings;
+    private int stateNumber;
+    private HashMode hashMode;
+    private HashAlgorithm hashAlgorithm;
+    private long treeHashSegmentSize;
+    private long entryCount;
+    private long fileNamesStart;
+
+    public HashIndex(Context context) {
+        this.indexFile = context.getRepositoryDotFimDir().resolve(HASH_INDEX_FILE);
+        try {
+            this.keyDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Replace the index with the files of this State. The new index is written aside and then renamed, so readers never see it partially written.
+     */
+    public void update(int stateNumber, State state) throws IOException {
+        List<FileState> fileStates = new ArrayList<>();
+        for (FileState fileState : state.getFileStates()) {
+            if (fileState.getFileLength() > 0 && fileState.getModification() != deleted) {
+                fileStates.add(fileState);
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>(fileStates.size());
+        long fileNameOffset = 0;
+        for (FileState fileState : fileStates) {
+            long[] key = computeKey(fileState.getFileHash());
+            entries.add(new Entry(key[0], key[1], fileState.getFileLength(), fileNameOffset));
+            fileNameOffset += Integer.BYTES + Utf8.encodedLength(fileState.getFileName());
+        }
+        entries.sort(null);
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        try (DataOutputStream header = new DataOutputStream(headerBytes)) {
+            header.writeInt(stateNumber);
+            header.writeUTF(state.getHashMode().name());
+            header.writeUTF(state.getHashAlgorithm().name());
+            header.writeLong(state.getTreeHashSegmentSize());
+            header.writeLong(entries.size());
+        }
+
+        Path tempFile = indexFile.resolveSibling(HASH_INDEX_FILE + ".tmp");
+        try (FileChannel tempChannel = FileChannel.open(tempFile, CREATE, TRUNCATE_EXISTING, WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(tempChannel), SIZE_1_MB))) {
+            out.writeLong(MAGIC);
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+
+            for (Entry entry : entries) {
+                out.writeLong(entry.keyHigh());
+                out.writeLong(entry.keyLow());
+                out.writeLong(entry.fileLength());
+                out.writeLong(entry.fileNameOffset());
+            }
+
+            // Written in the same order than the offsets were computed
+            for (FileState fileState : fileStates) {
+                byte[] fileName = fileState.getFileName().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(fileName.length);
+                out.write(fileName);
+            }
+        }
+        Files.move(tempFile, indexFile, ATOMIC_MOVE);
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(indexFile);
+    }
+
+    /**
+     * Map the index into memory.
+     *
+     * @return false if there is no index
+     */
+    public boolean open() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+
+        channel = FileChannel.open(indexFile, READ);
+        ByteBuffer prefix = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+        readFully(prefix, 0);
+        if (prefix.getLong(0) != MAGIC) {
+            throw new IOException(String.format("%s is not a hash index", indexFile));
+        }
+        ByteBuffer headerBytes = ByteBuffer.allocate(prefix.getInt(Long.BYTES));
+        readFully(headerBytes, prefix.capacity());
+        try (DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes.array()))) {
+            stateNumber = header.readInt();
+            hashMode = HashMode.valueOf(header.readUTF());
+            hashAlgorithm = HashAlgorithm.valueOf(header.readUTF());
+            treeHashSegmentSize = header.readLong();
+            entryCount = header.readLong();
+        }
+
+        long entriesStart = (long) prefix.capacity() + headerBytes.capacity();
+        fileNamesStart = entriesStart + entryCount * ENTRY_SIZE;
+        int mappingCount = (int) ((entryCount + ENTRIES_PER_MAPPING - 1) / ENTRIES_PER_MAPPING);
+        mappings = new MappedByteBuffer[mappingCount];
+        for (int index = 0; index < mappingCount; index++) {
+            long firstEntry = (long) index * ENTRIES_PER_MAPPING;
+            long mappedEntries = Math.min(ENTRIES_PER_MAPPING, entryCount - firstEntry);
+            mappings[index] = channel.map(FileChannel.MapMode.READ_ONLY, entriesStart + firstEntry * ENTRY_SIZE, mappedEntries * ENTRY_SIZE);
+        }
+        return true;
+    }
+
+    /**
+     * @return the name of an indexed file having the same hash and length than this one, or null if there is none
+     */
+    public String findFileName(FileState fileState) throws IOException {
+        long[] key = computeKey(fileState.getFileHash());
+
+        // Look for the first entry having this key
+        long low = 0;
+        long high = entryCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (compareKey(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (long index = low; index < entryCount && compareKey(index, key) == 0; index++) {
+            if (getEntryField(index, 2) == fileState.getFileLength()) {
+                return readFileName(getEntryField(index, 3));
+            }
+        }
+        return null;
+    }
+
+    public int getStateNumber() {
+        return stateNumber;
+    }
+
+    public HashMode getHashMode() {
+        return hashMode;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public long getTreeHashSegmentSize() {
+        return treeHashSegmentSize;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mappings = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private long[] computeKey(FileHash fileHash) {
+        String hashes = fileHash.getSmallBlockHash() + '\n' + fileHash.getMediumBlockHash() + '\n' + fileHash.getFullHash();
+        ByteBuffer digest = ByteBuffer.wrap(keyDigest.digest(hashes.getBytes(StandardCharsets.UTF_8)));
+        return new long[]{digest.getLong(0), digest.getLong(Long.BYTES)};
+    }
+
+    private int compareKey(long index, long[] key) {
+        int comparison = Long.compareUnsigned(getEntryField(index, 0), key[0]);
+        if (comparison != 0) {
+            return comparison;
+        }
+        return Long.compareUnsigned(getEntryField(index, 1), key[1]);
+    }
+
+    private long getEntryField(long index, int field) {
+        MappedByteBuffer mapping = mappings[(int) (index / ENTRIES_PER_MAPPING)];
+        return mapping.getLong((int) (index % ENTRIES_PER_MAPPING) * ENTRY_SIZE + field * Long.BYTES);
+    }
+
+    private String readFileName(long fileNameOffset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(length, fileNamesStart + fileNameOffset);
+        ByteBuffer fileName = ByteBuffer.allocate(length.getInt(0));
+        readFully(fileName, fileNamesStart + fileNameOffset + Integer.BYTES);
+        return new String(fileName.array(), StandardCharsets.UTF_8);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long currentPosition = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, currentPosition);
+            if (read < 0) {
+                throw new EOFException(String.format("Hash index %s is truncated", indexFile));
+            }
+            currentPosition += read;
+        }
+    }
+
+    private record Entry(long keyHigh, long keyLow, long fileLength, long fileNameOffset) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int comparison = Long.compareUnsigned(keyHigh, other.keyHigh);
+            if (comparison != 0) {
+                return comparison;
+            }
+            return Long.compareUnsigned(keyLow, other.keyLow);
+        }
+    }
+}
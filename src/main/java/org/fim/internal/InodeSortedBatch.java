@@ -0,0 +1,66 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.fim.internal.hash.FileToHash;
+import org.fim.util.FileUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects the files found by the scan and sends them sorted by inode, which is close to their physical order on ext4 and XFS.
+ * The files of several directories are sorted together, so that a hard disk reads them moving forward instead of seeking back and forth.
+ */
+class InodeSortedBatch {
+    private static final Comparator<InodeFile> INODE_COMPARATOR = Comparator.comparingLong(InodeFile::inode);
+
+    private final int capacity;
+    private final Consumer<FileToHash> enqueuer;
+    private final List<InodeFile> files;
+
+    InodeSortedBatch(int capacity, Consumer<FileToHash> enqueuer) {
+        this.capacity = capacity;
+        this.enqueuer = enqueuer;
+        this.files = new ArrayList<>(capacity);
+    }
+
+    synchronized void add(FileToHash fileToHash) {
+        // The inode is parsed once per file, not on each comparison of the sort
+        files.add(new InodeFile(FileUtil.getInode(fileToHash.attributes()), fileToHash));
+        if (files.size() >= capacity) {
+            flush();
+        }
+    }
+
+    /**
+     * Send the files of the batch sorted by inode. The files without inode keep their scan order.
+     */
+    synchronized void flush() {
+        files.sort(INODE_COMPARATOR);
+        files.forEach(file -> enqueuer.accept(file.fileToHash()));
+        files.clear();
+    }
+
+    private record InodeFile(long inode, FileToHash fileToHash) {
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.fim.model.Context;
+import org.fim.model.DuplicateResult;
+import org.fim.model.FileHash;
+import org.fim.model.FilePattern;
+import org.fim.model.FileState;
+import org.fim.model.HashMode;
+import org.fim.model.State;
+import org.fim.util.Logger;
+
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.atteo.evo.inflector.English.plural;
+import static org.fim.model.Constants.NO_HASH;
+import static org.fim.model.HashMode.dontHash;
+import static org.fim.model.HashMode.hashAll;
+import static org.fim.model.HashMode.hashMediumBlock;
+import static org.fim.model.HashMode.hashSmallBlock;
+import static org.fim.util.FileUtil.byteCountToDisplaySize;
+import static org.fim.util.HashModeUtil.isCompatible;
+
+/**
+ * Find the duplicates reading as little data as possible.
+ * The files are first grouped by size using a scan that does not hash them.
+ * Only the files that share their size get their small block hashed, then only the ones that still collide get their medium block hashed,
+ * and so on up to the full hash.
+ * The same hashers are used than for a regular scan, so the duplicates found are the same than with the {@link DuplicateFinder}.
+ */
+public class ProgressiveDuplicateFinder {
+    private static final HashMode[] HASH_STAGES = {hashSmallBlock, hashMediumBlock, hashAll};
+
+    private final Context context;
+
+    public ProgressiveDuplicateFinder(Context context) {
+        this.context = context;
+    }
+
+    public DuplicateResult findDuplicates(Path dirToScan) throws NoSuchAlgorithmException {
+        Context scanContext = context.clone();
+        scanContext.setHashMode(dontHash);
+        scanContext.setThreadCount(1);
+        scanContext.setUseDynamicScaling(false);
+        State state = new StateGenerator(scanContext).generateState("", context.getRepositoryRootDir(), dirToScan);
+
+        List<FileState> candidates = new ArrayList<>();
+        for (FileState fileState : state.getFileStates()) {
+            if (fileState.getFileLength() > 0 && isSelected(fileState)) {
+                candidates.add(fileState);
+            }
+        }
+        candidates = keepCollisions(candidates, FileState::getFileLength);
+        Logger.info(String.format("%d %s out of %d share their size with another file",
+                candidates.size(), plural("file", candidates.size()), state.getFileCount()));
+
+        int threadCount = context.getThreadCount() > 0 ? context.getThreadCount() : Runtime.getRuntime().availableProcessors();
+        for (HashMode hashStage : HASH_STAGES) {
+            if (candidates.isEmpty() || !isCompatible(context.getHashMode(), hashStage)) {
+                break;
+            }
+
+            Context stageContext = context.clone();
+            stageContext.setHashMode(hashStage);
+            stageContext.setThreadCount(threadCount);
+            stageContext.setUseDynamicScaling(false);
+            long candidatesLength = candidates.stream().mapToLong(FileState::getFileLength).sum();
+            new StateReGenerator(stageContext).reHashFiles(candidates, String.format("Hashing the %d candidate %s (%s)",
+                    candidates.size(), plural("file", candidates.size()), byteCountToDisplaySize(candidatesLength)));
+
+            // The files that could not be hashed are not duplicates of anything
+            candidates.removeIf(fileState -> getHash(fileState.getFileHash(), hashStage).equals(NO_HASH));
+            candidates = keepCollisions(candidates, fileState -> new CandidateKey(fileState.getFileLength(), fileState.getFileHash()));
+        }
+
+        State candidateState = new State();
+        candidateState.setHashMode(context.getHashMode());
+        candidateState.getFileStates().addAll(candidates);
+        return new DuplicateFinder(context).findDuplicates(candidateState);
+    }
+
+    private boolean isSelected(FileState fileState) {
+        String fileName = context.getRepositoryRootDir().resolve(fileState.getFileName()).getFileName().toString();
+        return FilePattern.isSelected(fileName, context.getIncludePatterns(), context.getExcludePatterns());
+    }
+
+    private static <K> List<FileState> keepCollisions(List<FileState> fileStates, Function<FileState, K> keyExtractor) {
+        Map<K, List<FileState>> groups = new LinkedHashMap<>();
+        for (FileState fileState : fileStates) {
+            groups.computeIfAbsent(keyExtractor.apply(fileState), key -> new ArrayList<>()).add(fileState);
+        }
+
+        List<FileState> collisions = new ArrayList<>();
+        for (Collection<FileState> group : groups.values()) {
+            if (group.size() > 1) {
+                collisions.addAll(group);
+            }
+        }
+        return collisions;
+    }
+
+    private static String getHash(FileHash fileHash, HashMode hashStage) {
+        return switch (hashStage) {
+            case hashSmallBlock -> fileHash.getSmallBlockHash();
+            case hashMediumBlock -> fileHash.getMediumBlockHash();
+            default -> fileHash.getFullHash();
+        };
+    }
+
+    private record CandidateKey(long fileLength, FileHash fileHash) {
+    }
+}
@@ -23,8 +23,10 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.fim.command.exception.RepositoryException;
 import org.fim.model.Context;
+import org.fim.model.HashAlgorithm;
 import org.fim.model.HashMode;
 import org.fim.model.Settings;
+import org.fim.model.StateFormat;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -35,6 +37,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 public class SettingsManager {
     public static final String SETTINGS_FILE = "settings.json";
@@ -92,4 +95,66 @@ public class SettingsManager {
     public void setLastStateNumber(int lastStateNumber) {
         settings.setLastStateNumber(lastStateNumber);
     }
+
+    public boolean isTrustModificationTime() {
+        return settings.isTrustModificationTime();
+    }
+
+    public void setTrustModificationTime(boolean trustModificationTime) {
+        settings.setTrustModificationTime(trustModificationTime);
+    }
+
+    public int getFullRehashIntervalDays() {
+        return settings.getFullRehashIntervalDays();
+    }
+
+    public void setFullRehashIntervalDays(int fullRehashIntervalDays) {
+        settings.setFullRehashIntervalDays(fullRehashIntervalDays);
+    }
+
+    public long getLastFullRehashTimestamp() {
+        return settings.getLastFullRehashTimestamp();
+    }
+
+    public void setLastFullRehashTimestamp(long lastFullRehashTimestamp) {
+        settings.setLastFullRehashTimestamp(lastFullRehashTimestamp);
+    }
+
+    public StateFormat getStateFormat() {
+        return settings.getStateFormat();
+    }
+
+    public void setStateFormat(StateFormat stateFormat) {
+        settings.setStateFormat(stateFormat);
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        // Settings saved before the hash algorithm could be chosen
+        return settings.getHashAlgorithm() != null ? settings.getHashAlgorithm() : HashAlgorithm.sha512;
+    }
+
+    public void setHashAlgorithm(HashAlgorithm hashAlgorithm) {
+        settings.setHashAlgorithm(hashAlgorithm);
+    }
+
+    public long getTreeHashSegmentSize() {
+        return settings.getTreeHashSegmentSize();
+    }
+
+    public void setTreeHashSegmentSize(long treeHashSegmentSize) {
+        settings.setTreeHashSegmentSize(treeHashSegmentSize);
+    }
+
+    /**
+     * @return true if the hash of all the files must be computed again, because the last full rehash is older than fullRehashIntervalDays.
+     * A fullRehashIntervalDays lower or equal to 0 disables the schedule.
+     */
+    public boolean isFullRehashDue() {
+        int intervalDays = getFullRehashIntervalDays();
+        if (intervalDays <= 0) {
+            return false;
+        }
+        long elapsed = System.currentTimeMillis() - getLastFullRehashTimestamp();
+        return elapsed >= TimeUnit.DAYS.toMillis(intervalDays);
+    }
 }
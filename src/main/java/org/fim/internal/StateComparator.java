@@ -30,18 +30,23 @@ import org.fim.model.FileState;
 import org.fim.model.FileTime;
 import org.fim.model.Modification;
 import org.fim.model.State;
+import org.fim.util.FileStateIndex;
 import org.fim.util.Logger;
 import org.fim.util.SELinux;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.fim.model.Constants.SIZE_1_MB;
 import static org.fim.model.FileAttribute.DosFilePermissions;
 import static org.fim.model.FileAttribute.PosixFilePermissions;
 import static org.fim.model.FileAttribute.SELinuxLabel;
@@ -49,9 +54,10 @@ import static org.fim.model.HashMode.dontHash;
 import static org.fim.model.Modification.deleted;
 import static org.fim.util.FileStateUtil.buildFileHashList;
 import static org.fim.util.FileStateUtil.buildFileNamesMap;
-import static org.fim.util.FileStateUtil.buildHashCodeMap;
 
 public class StateComparator {
+    private static final Comparator<FileState> FILE_NAME_COMPARATOR = new FileState.FileNameComparator();
+
     private final Context context;
 
     private State lastState;
@@ -95,6 +101,18 @@ public class StateComparator {
             lastState = null;
         }
 
+        if (lastState != null && lastState.getHashAlgorithm() != currentState.getHashAlgorithm()) {
+            Logger.warning(String.format("Not able to compare with a State that use the '%s' hash algorithm instead of '%s'.",
+                    lastState.getHashAlgorithm(), currentState.getHashAlgorithm()));
+            lastState = null;
+        }
+
+        if (lastState != null && !lastState.isHashedLike(currentState)) {
+            Logger.warning(String.format("Not able to compare with a State that use a tree hash segment size of %d MB instead of %d MB.",
+                    lastState.getTreeHashSegmentSize() / SIZE_1_MB, currentState.getTreeHashSegmentSize() / SIZE_1_MB));
+            lastState = null;
+        }
+
         makeLastStateComparable();
 
         result = new CompareResult(context, lastState);
@@ -160,8 +178,12 @@ public class StateComparator {
     }
 
     public CompareResult compare() {
-        searchForAddedOrModified();
-        searchForSameFileNames();
+        if (context.isSortMergeComparison()) {
+            mergeOnFileNames();
+        } else {
+            searchForAddedOrModified();
+            searchForSameFileNames();
+        }
 
         if (!hardwareCorruptionDetection) {
             searchForDifferences();
@@ -189,18 +211,18 @@ public class StateComparator {
 
         resetNewHash(previousFileStates.values());
 
-        Map<Long, FileState> previousFileStatesHashCodeMap = buildHashCodeMap(previousFileStates.values());
+        FileStateIndex previousFileStatesIndex = new FileStateIndex(previousFileStates.values());
 
         notModifiedCount = 0;
         List<FileState> fileStates = currentState.getFileStates();
         for (FileState fileState : fileStates) {
-            if (previousFileStatesHashCodeMap.remove(fileState.longHashCode()) != null) {
+            if (previousFileStatesIndex.remove(fileState) != null) {
                 notModifiedCount++;
             } else {
                 addedOrModified.add(fileState);
             }
         }
-        notFoundInCurrentFileState.addAll(previousFileStatesHashCodeMap.values());
+        notFoundInCurrentFileState.addAll(previousFileStatesIndex.values());
 
         logDebug("Built addedOrModified", "notFoundInCurrentFileState", notFoundInCurrentFileState, "addedOrModified", addedOrModified);
     }
@@ -215,34 +237,7 @@ public class StateComparator {
             managed = false;
             if ((previousFileState = findFileWithSameFileName(fileState, notFoundInCurrentFileStateNamesMap)) != null) {
                 notFoundInCurrentFileStateNamesMap.remove(previousFileState.getFileName());
-
-                if (hardwareCorruptionDetection) {
-                    if (!previousFileState.getFileHash().equals(fileState.getFileHash()) &&
-                        previousFileState.getFileTime().equals(fileState.getFileTime())) {
-                        result.getCorrupted().add(new Difference(previousFileState, fileState));
-                        fileState.setModification(Modification.corrupted);
-                        managed = true;
-                    }
-                } else {
-                    if (sameContent(previousFileState, fileState)) {
-                        if (!previousFileState.getFileTime().equals(fileState.getFileTime())) {
-                            result.getDateModified().add(new Difference(previousFileState, fileState));
-                            fileState.setModification(Modification.dateModified);
-                            managed = true;
-                        } else if (!Objects.equals(previousFileState.getFileAttributes(), fileState.getFileAttributes())) {
-                            result.getAttributesModified().add(new Difference(previousFileState, fileState));
-                            fileState.setModification(Modification.attributesModified);
-                            managed = true;
-                        }
-                    } else {
-                        result.getContentModified().add(new Difference(previousFileState, fileState));
-                        fileState.setModification(Modification.contentModified);
-                        managed = true;
-
-                        // File has been modified so set the new hash for accurate duplicate detection
-                        previousFileState.setNewFileHash(new FileHash(fileState.getFileHash()));
-                    }
-                }
+                managed = compareSameFileName(previousFileState, fileState);
             }
 
             if (!managed) {
@@ -255,6 +250,105 @@ public class StateComparator {
         logDebug("Search done for same FileNames", "notFoundInCurrentFileState", notFoundInCurrentFileState, "addedOrModified", addedOrModified);
     }
 
+    /**
+     * Sort-merge engine that replaces searchForAddedOrModified() and searchForSameFileNames().
+     * Both States are walked in FileName order, so no map holding the whole last State is needed.
+     * Only the unmatched FileStates are kept for the rename, copy and duplicate detection.
+     */
+    private void mergeOnFileNames() {
+        List<FileState> lastFileStates = lastState != null ? sortedByFileName(lastState.getFileStates()) : List.of();
+        List<FileState> currentFileStates = sortedByFileName(currentState.getFileStates());
+        if (lastState != null) {
+            logDebug("---------------------------------------------------------------------",
+                    "lastState", lastFileStates, "currentState", currentFileStates);
+        } else {
+            logDebug("---------------------------------------------------------------------",
+                    "currentState", currentFileStates);
+        }
+
+        resetNewHash(lastFileStates);
+
+        notModifiedCount = 0;
+        int lastIndex = 0;
+        int currentIndex = 0;
+        while (currentIndex < currentFileStates.size()) {
+            FileState fileState = currentFileStates.get(currentIndex);
+            if (lastIndex >= lastFileStates.size()) {
+                addedOrModified.add(fileState);
+                currentIndex++;
+                continue;
+            }
+
+            FileState previousFileState = lastFileStates.get(lastIndex);
+            int comparison = fileState.getFileName().compareTo(previousFileState.getFileName());
+            if (comparison < 0) {
+                addedOrModified.add(fileState);
+                currentIndex++;
+            } else if (comparison > 0) {
+                notFoundInCurrentFileState.add(previousFileState);
+                lastIndex++;
+            } else {
+                if (fileState.equals(previousFileState)) {
+                    notModifiedCount++;
+                } else if (!compareSameFileName(previousFileState, fileState)) {
+                    addedOrModified.add(fileState);
+                }
+                currentIndex++;
+                lastIndex++;
+            }
+        }
+        notFoundInCurrentFileState.addAll(lastFileStates.subList(lastIndex, lastFileStates.size()));
+
+        logDebug("Merge done on FileNames", "notFoundInCurrentFileState", notFoundInCurrentFileState, "addedOrModified", addedOrModified);
+    }
+
+    private List<FileState> sortedByFileName(List<FileState> fileStates) {
+        for (int index = 1; index < fileStates.size(); index++) {
+            if (FILE_NAME_COMPARATOR.compare(fileStates.get(index - 1), fileStates.get(index)) > 0) {
+                List<FileState> sorted = new ArrayList<>(fileStates);
+                sorted.sort(FILE_NAME_COMPARATOR);
+                return sorted;
+            }
+        }
+        return fileStates;
+    }
+
+    /**
+     * Compare two FileStates that have the same FileName and record the modification found.
+     *
+     * @return true if the modification of the current FileState is known
+     */
+    private boolean compareSameFileName(FileState previousFileState, FileState fileState) {
+        if (hardwareCorruptionDetection) {
+            if (!previousFileState.getFileHash().equals(fileState.getFileHash()) &&
+                previousFileState.getFileTime().equals(fileState.getFileTime())) {
+                result.getCorrupted().add(new Difference(previousFileState, fileState));
+                fileState.setModification(Modification.corrupted);
+                return true;
+            }
+        } else {
+            if (sameContent(previousFileState, fileState)) {
+                if (!previousFileState.getFileTime().equals(fileState.getFileTime())) {
+                    result.getDateModified().add(new Difference(previousFileState, fileState));
+                    fileState.setModification(Modification.dateModified);
+                    return true;
+                } else if (!Objects.equals(previousFileState.getFileAttributes(), fileState.getFileAttributes())) {
+                    result.getAttributesModified().add(new Difference(previousFileState, fileState));
+                    fileState.setModification(Modification.attributesModified);
+                    return true;
+                }
+            } else {
+                result.getContentModified().add(new Difference(previousFileState, fileState));
+                fileState.setModification(Modification.contentModified);
+
+                // File has been modified so set the new hash for accurate duplicate detection
+                previousFileState.setNewFileHash(new FileHash(fileState.getFileHash()));
+                return true;
+            }
+        }
+        return false;
+    }
+
     // Compare the FileLength and the FileHash
     private boolean sameContent(FileState fileState1, FileState fileState2) {
         return fileState1.getFileLength() == fileState2.getFileLength() && fileState1.getFileHash().equals(fileState2.getFileHash());
@@ -263,13 +357,13 @@ public class StateComparator {
     private void searchForDifferences() {
         ListMultimap<FileHash, FileState> notFoundInCurrentFileStateList = buildFileHashList(notFoundInCurrentFileState);
         Map<FileHash, FileState> foundInPreviousState = new HashMap<>();
+        Map<FileHash, FileState> originalFileStates = context.isSortMergeComparison() ? buildOriginalFileStatesMap() : null;
 
-        List<FileState> samePreviousHashes;
+        FileState originalFileState;
         for (FileState fileState : addedOrModified) {
             if ((fileState.getFileLength() > 0) &&
                 (context.getHashMode() != dontHash) &&
-                (!(samePreviousHashes = findFilesWithSameHash(fileState, previousFileStates)).isEmpty())) {
-                FileState originalFileState = samePreviousHashes.getFirst();
+                ((originalFileState = findOriginalFileState(fileState, originalFileStates)) != null)) {
                 FileHash originalFileHash = originalFileState.getFileHash();
                 if (notFoundInCurrentFileStateList.containsKey(originalFileHash) ||
                     foundInPreviousState.containsKey(originalFileHash)) {
@@ -378,7 +472,40 @@ public class StateComparator {
         return fileStates.get(search.getFileName());
     }
 
-    private List<FileState> findFilesWithSameHash(FileState search, ListMultimap<FileHash, FileState> fileStates) {
-        return fileStates.get(search.getFileHash());
+    /**
+     * Used by the sort-merge engine. Scan the last State once to keep, for each FileHash of the remaining
+     * addedOrModified FileStates, the first FileState of the last State that have it.
+     */
+    private Map<FileHash, FileState> buildOriginalFileStatesMap() {
+        Map<FileHash, FileState> originalFileStates = new HashMap<>();
+        if (lastState == null || context.getHashMode() == dontHash) {
+            return originalFileStates;
+        }
+
+        Set<FileHash> searchedHashes = new HashSet<>();
+        for (FileState fileState : addedOrModified) {
+            if (fileState.getFileLength() > 0) {
+                searchedHashes.add(fileState.getFileHash());
+            }
+        }
+
+        for (FileState fileState : lastState.getFileStates()) {
+            if (searchedHashes.isEmpty()) {
+                break;
+            }
+            if (searchedHashes.remove(fileState.getFileHash())) {
+                originalFileStates.put(fileState.getFileHash(), fileState);
+            }
+        }
+        return originalFileStates;
+    }
+
+    private FileState findOriginalFileState(FileState search, Map<FileHash, FileState> originalFileStates) {
+        if (originalFileStates != null) {
+            return originalFileStates.get(search.getFileHash());
+        }
+
+        List<FileState> samePreviousHashes = previousFileStates.get(search.getFileHash());
+        return samePreviousHashes.isEmpty() ? null : samePreviousHashes.getFirst();
     }
 }
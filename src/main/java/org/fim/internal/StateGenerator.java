@@ -19,9 +19,14 @@
 
 package org.fim.internal;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.fim.command.exception.FimInternalError;
 import org.fim.internal.hash.FileHasher;
+import org.fim.internal.hash.FileToHash;
 import org.fim.internal.hash.HashProgress;
+import org.fim.internal.hash.XattrHashCache;
 import org.fim.model.Context;
 import org.fim.model.FilePattern;
 import org.fim.model.FileState;
@@ -29,32 +34,52 @@ import org.fim.model.FimIgnore;
 import org.fim.model.State;
 import org.fim.util.FileUtil;
 import org.fim.util.Logger;
+import org.fim.util.SELinux;
 
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import static org.atteo.evo.inflector.English.plural;
+import static org.fim.internal.FimIgnoreManager.DOT_FIM_IGNORE;
 import static org.fim.internal.hash.HashProgress.PROGRESS_DISPLAY_FILE_COUNT;
 import static org.fim.model.HashMode.dontHash;
+import static org.fim.model.Modification.deleted;
+import static org.fim.util.FileStateUtil.buildFileNamesMap;
 import static org.fim.util.FileUtil.byteCountToDisplaySize;
 import static org.fim.util.HashModeUtil.hashModeToString;
 
 public class StateGenerator {
     private static final int FILES_QUEUE_CAPACITY = 500;
+    private static final int SCAN_PARALLELISM = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
+    private static final boolean UNIX_VIEW_SUPPORTED = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
 
     private static final Comparator<FileState> FILE_NAME_COMPARATOR = new FileState.FileNameComparator();
 
@@ -65,9 +90,13 @@ public class StateGenerator {
     ExecutorService executorService;
 
     protected Path rootDir;
-    private BlockingDeque<Path> filesToHashQueue;
-    private AtomicBoolean scanInProgress;
+    private BlockingDeque<FileToHash> filesToHashQueue;
+    private Map<Object, BlockingDeque<FileToHash>> deviceQueues; // One queue per device id when hashing per device
+    private Map<BlockingDeque<FileToHash>, InodeSortedBatch> inodeSortedBatches; // One batch per queue when hashing in inode order
     List<FileHasher> fileHashers;
+    private Map<String, FileState> previousFileStates;
+    private boolean xattrCacheTrusted = true;
+    private XattrHashCache xattrHashCache;
 
     public StateGenerator(Context context) {
         this.context = context;
@@ -75,18 +104,119 @@ public class StateGenerator {
         this.fimIgnoreManager = new FimIgnoreManager(context);
     }
 
+    /**
+     * Reuse the hash of the previous State for the files whose size and dates did not change.
+     */
+    public void setPreviousState(State previousState) {
+        if (previousState.getHashAlgorithm() != context.getHashAlgorithm() ||
+            previousState.getTreeHashSegmentSize() != context.getTreeHashSegmentSize()) {
+            // Hashes computed with another algorithm or another tree hash cannot be reused
+            this.previousFileStates = null;
+            return;
+        }
+        this.previousFileStates = buildFileNamesMap(previousState.getFileStates());
+    }
+
+    /**
+     * When the content of all the files must really be read, the hashes kept in the extended attributes are written but not read.
+     */
+    public void setXattrCacheTrusted(boolean xattrCacheTrusted) {
+        this.xattrCacheTrusted = xattrCacheTrusted;
+    }
+
     public State generateState(String comment, Path rootDir, Path dirToScan) throws NoSuchAlgorithmException {
+        return generateState(comment, rootDir, fimIgnore -> new ScanDirectoryTask(dirToScan, fimIgnore, filesToHashQueue));
+    }
+
+    /**
+     * Scan only the paths changed since the previous State, as journaled by 'fim watch'. The other files are taken from the previous State.
+     */
+    public State generateState(String comment, Path rootDir, State previousState, Set<String> changedPaths) throws NoSuchAlgorithmException {
+        Set<String> pathsToScan = getPathsToScan(changedPaths);
+        State state = generateState(comment, rootDir, fimIgnore -> new ScanChangedPathsTask(pathsToScan, fimIgnore));
+
+        for (FileState fileState : previousState.getFileStates()) {
+            if (fileState.getModification() != deleted && !isUnderOneOf(fileState.getFileName(), pathsToScan)) {
+                FileState unchangedFileState = fileState.clone();
+                unchangedFileState.setModification(null);
+                unchangedFileState.setPreviousFileState(null);
+                state.getFileStates().add(unchangedFileState);
+            }
+        }
+        state.getFileStates().sort(FILE_NAME_COMPARATOR);
+
+        for (String ignoredFile : previousState.getIgnoredFiles()) {
+            if (!isUnderOneOf(StringUtils.removeEnd(ignoredFile, "/"), pathsToScan)) {
+                state.getIgnoredFiles().add(ignoredFile);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * When a .fimignore changed, all the directory must be scanned again. The paths that are inside another one to scan are removed.
+     */
+    private Set<String> getPathsToScan(Set<String> changedPaths) {
+        Set<String> paths = new HashSet<>();
+        for (String path : changedPaths) {
+            if (path.endsWith("/" + DOT_FIM_IGNORE)) {
+                paths.add(StringUtils.removeEnd(path, "/" + DOT_FIM_IGNORE));
+            } else {
+                paths.add(path);
+            }
+        }
+
+        Set<String> pathsToScan = new HashSet<>();
+        for (String path : paths) {
+            int index = path.lastIndexOf('/');
+            if (index < 0 || !isUnderOneOf(path.substring(0, index), paths)) {
+                pathsToScan.add(path);
+            }
+        }
+        return pathsToScan;
+    }
+
+    private static boolean isUnderOneOf(String fileName, Set<String> paths) {
+        if (paths.contains(fileName)) {
+            return true;
+        }
+        for (int index = fileName.lastIndexOf('/'); index > 0; index = fileName.lastIndexOf('/', index - 1)) {
+            if (paths.contains(fileName.substring(0, index))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private State generateState(String comment, Path rootDir, Function<FimIgnore, RecursiveAction> scanTaskFactory) throws NoSuchAlgorithmException {
         this.rootDir = rootDir;
+        SELinux.clearLabelCache();
 
         String usingThreads;
         if (context.isUseDynamicScaling()) {
             usingThreads = "automatic scaling";
+        } else if (context.isHashPerDevice()) {
+            usingThreads = String.format("%d %s per device", context.getThreadsPerDevice(), plural("thread", context.getThreadsPerDevice()));
         } else {
             usingThreads = String.format("%d %s", context.getThreadCount(), plural("thread", context.getThreadCount()));
         }
         Logger.info(String.format("Scanning recursively local files, using '%s' mode and %s",
                 hashModeToString(context.getHashMode()), usingThreads));
+        if (previousFileStates != null) {
+            Logger.info("Reusing the hash of the files whose size and dates did not change since the last State");
+        }
+        if (context.isInodeOrder()) {
+            Logger.info("Hashing the files in inode order");
+        }
+        xattrHashCache = null;
+        if (context.isUseXattrCache() && context.getHashMode() != dontHash) {
+            xattrHashCache = new XattrHashCache(context, xattrCacheTrusted);
+            if (xattrCacheTrusted && !context.isParanoid()) {
+                Logger.info("Reusing the hash kept in the extended attributes of the files whose size and dates did not change");
+            }
+        }
         context.initializeDynamicScaling();
+        context.getDynamicScaling().setWorkerStarter(this::startFileHasherFromScaling);
 
         if (hashProgress.isProgressDisplayed()) {
             Logger.out.printf("(Hash progress legend for files grouped %d by %d: %s)%n", PROGRESS_DISPLAY_FILE_COUNT, PROGRESS_DISPLAY_FILE_COUNT,
@@ -96,28 +226,41 @@ public class StateGenerator {
         State state = new State();
         state.setComment(comment);
         state.setHashMode(context.getHashMode());
+        state.setHashAlgorithm(context.getHashAlgorithm());
+        state.setTreeHashSegmentSize(context.getTreeHashSegmentSize());
         state.getCommitDetails().setHashModeUsedToGetTheStatus(context.getHashMode());
 
         long start = System.currentTimeMillis();
         hashProgress.outputInit();
 
         filesToHashQueue = new LinkedBlockingDeque<>(FILES_QUEUE_CAPACITY);
+        deviceQueues = new HashMap<>();
+        inodeSortedBatches = new ConcurrentHashMap<>();
         initializeFileHashers();
+        // The FileHashers consume the files as soon as the scan finds them
+        startFileHashers();
 
         FimIgnore initialFimIgnore = fimIgnoreManager.loadInitialFimIgnore();
+        ForkJoinPool scanPool = new ForkJoinPool(SCAN_PARALLELISM);
         try {
-            scanInProgress = new AtomicBoolean(true);
-            scanFileTree(filesToHashQueue, dirToScan, initialFimIgnore);
+            scanPool.invoke(scanTaskFactory.apply(initialFimIgnore));
         } finally {
-            scanInProgress.set(false);
+            scanPool.shutdown();
+            inodeSortedBatches.values().forEach(InodeSortedBatch::flush);
+            for (BlockingDeque<FileToHash> queue : getFilesToHashQueues()) {
+                enqueueFile(queue, FileToHash.END_OF_STREAM);
+            }
         }
 
-        // In case the FileHashers have not already been started
-        startFileHashers();
-
         waitAllFilesToBeHashed();
-
-        System.gc(); // Force to cleanup unused memory
+        if (context.isUseDynamicScaling()) {
+            DynamicScaling dynamicScaling = context.getDynamicScaling();
+            Logger.rawDebug(String.format("Dynamic scaling: %d scale up, %d scale down, at most %d threads",
+                    dynamicScaling.getScaleUpCount(), dynamicScaling.getScaleDownCount(), dynamicScaling.getPeakThreadCount()));
+        }
+        if (context.isHashPerDevice()) {
+            Logger.rawDebug(String.format("Hashed the files of %d %s", deviceQueues.size(), plural("device", deviceQueues.size())));
+        }
 
         long overallTotalBytesHashed = 0;
         for (FileHasher fileHasher : fileHashers) {
@@ -143,15 +286,26 @@ public class StateGenerator {
         if (context.isUseDynamicScaling()) {
             maxThreads = context.getDynamicScaling().getMaxThreads();
         }
-        executorService = Executors.newFixedThreadPool(maxThreads);
+        if (context.isHashPerDevice()) {
+            // The number of devices is known only once they are all scanned
+            executorService = Executors.newCachedThreadPool();
+        } else {
+            executorService = Executors.newFixedThreadPool(maxThreads);
+        }
     }
 
-    protected void startFileHashers() throws NoSuchAlgorithmException {
+    protected synchronized void startFileHashers() throws NoSuchAlgorithmException {
         if (!hashProgress.isHashStarted()) {
             hashProgress.hashStarted();
             String normalizedRootDir = FileUtil.getNormalizedFileName(rootDir);
-            if (context.isUseDynamicScaling()) {
-                startFileHasher(normalizedRootDir);
+            if (context.isHashPerDevice()) {
+                // The files of the devices that cannot be identified are hashed with the ones of the root directory
+                filesToHashQueue = getDeviceQueue(getDeviceId(rootDir));
+            } else if (context.isUseDynamicScaling()) {
+                // Start from the thread count that was found for the previous State, if any
+                for (int index = 0; index < context.getDynamicScaling().getCurrentThreadCount(); index++) {
+                    startFileHasher(normalizedRootDir);
+                }
             } else {
                 for (int index = 0; index < context.getThreadCount(); index++) {
                     startFileHasher(normalizedRootDir);
@@ -161,14 +315,69 @@ public class StateGenerator {
     }
 
     public FileHasher startFileHasher(String normalizedRootDir) throws NoSuchAlgorithmException {
-        FileHasher hasher = new FileHasher(context, scanInProgress, hashProgress, filesToHashQueue, normalizedRootDir);
+        return startFileHasher(normalizedRootDir, filesToHashQueue);
+    }
+
+    private FileHasher startFileHasher(String normalizedRootDir, BlockingDeque<FileToHash> queue) throws NoSuchAlgorithmException {
+        FileHasher hasher = new FileHasher(context, hashProgress, queue, normalizedRootDir);
+        hasher.setPreviousFileStates(previousFileStates);
+        hasher.setXattrHashCache(xattrHashCache);
         executorService.submit(hasher);
         fileHashers.add(hasher);
+        return hasher;
+    }
 
-        if (context.isUseDynamicScaling()) {
-            context.setThreadCount(fileHashers.size());
+    private synchronized void startFileHasherFromScaling() {
+        if (executorService.isShutdown()) {
+            return; // All the files are already hashed
+        }
+        try {
+            startFileHasher(FileUtil.getNormalizedFileName(rootDir));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new FimInternalError("Unable to start a FileHasher: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Get the queue of a device. The first time, the queue is created with its own FileHashers,
+     * so that each disk is read sequentially by a few threads while the other disks are read in parallel.
+     */
+    private synchronized BlockingDeque<FileToHash> getDeviceQueue(Object deviceId) {
+        BlockingDeque<FileToHash> queue = deviceQueues.get(deviceId);
+        if (queue == null) {
+            queue = new LinkedBlockingDeque<>(FILES_QUEUE_CAPACITY);
+            deviceQueues.put(deviceId, queue);
+            try {
+                String normalizedRootDir = FileUtil.getNormalizedFileName(rootDir);
+                for (int index = 0; index < context.getThreadsPerDevice(); index++) {
+                    startFileHasher(normalizedRootDir, queue);
+                }
+            } catch (NoSuchAlgorithmException ex) {
+                throw new FimInternalError("Unable to start the FileHashers: " + ex.getMessage());
+            }
+        }
+        return queue;
+    }
+
+    private synchronized Collection<BlockingDeque<FileToHash>> getFilesToHashQueues() {
+        if (context.isHashPerDevice()) {
+            return deviceQueues.values();
+        }
+        return Collections.singletonList(filesToHashQueue);
+    }
+
+    /**
+     * @return the id of the device holding this directory, or null if it cannot be read.
+     */
+    private Object getDeviceId(Path directory) {
+        try {
+            if (UNIX_VIEW_SUPPORTED) {
+                return Files.getAttribute(directory, "unix:dev", LinkOption.NOFOLLOW_LINKS);
+            }
+            return Files.getFileStore(directory);
+        } catch (IOException | UnsupportedOperationException ex) {
+            return null;
         }
-        return hasher;
     }
 
     public Context getContext() {
@@ -183,7 +392,9 @@ public class StateGenerator {
         try {
             hashProgress.waitAllFilesToBeHashed();
 
-            executorService.shutdown();
+            synchronized (this) {
+                executorService.shutdown();
+            }
             executorService.awaitTermination(3, TimeUnit.DAYS);
         } catch (InterruptedException ex) {
             Logger.error("Exception while waiting for files to be hashed", ex, context.isDisplayStackTrace());
@@ -217,41 +428,184 @@ public class StateGenerator {
         }
     }
 
-    private void scanFileTree(BlockingDeque<Path> filesToHashQueue, Path directory, FimIgnore parentFimIgnore) throws NoSuchAlgorithmException {
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
-            FimIgnore fimIgnore = fimIgnoreManager.loadLocalIgnore(directory, parentFimIgnore);
+    /**
+     * Scan one directory. Each sub-directory is scanned by its own task, so that the work-stealing pool walks many directories at once.
+     * The .fimignore of a directory is loaded before forking the sub-directory tasks, so they inherit it like in a sequential walk.
+     * When hashing per device, the files are sent to the queue of the device holding the directory, mount points being directories.
+     */
+    private class ScanDirectoryTask extends RecursiveAction {
+        private final Path directory;
+        private final FimIgnore parentFimIgnore;
+        private final BlockingDeque<FileToHash> parentQueue;
+
+        ScanDirectoryTask(Path directory, FimIgnore parentFimIgnore, BlockingDeque<FileToHash> parentQueue) {
+            this.directory = directory;
+            this.parentFimIgnore = parentFimIgnore;
+            this.parentQueue = parentQueue;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanDirectoryTask> subDirectoryTasks = new ArrayList<>();
+            BlockingDeque<FileToHash> queue = getQueue();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                FimIgnore fimIgnore = fimIgnoreManager.loadLocalIgnore(directory, parentFimIgnore);
+
+                for (Path file : stream) {
+                    BasicFileAttributes attributes = readAttributes(file);
+                    String fileName = file.getFileName().toString();
+                    if (fimIgnoreManager.isIgnored(fileName, attributes, fimIgnore)) {
+                        fimIgnoreManager.ignoreThisFiles(file, attributes);
+                    } else {
+                        if (attributes.isRegularFile()) {
+                            if (matchPatterns(fileName)) {
+                                scheduleFile(queue, new FileToHash(file, attributes));
+                            }
+                        } else if (attributes.isDirectory()) {
+                            ScanDirectoryTask subDirectoryTask = new ScanDirectoryTask(file, fimIgnore, queue);
+                            subDirectoryTask.fork();
+                            subDirectoryTasks.add(subDirectoryTask);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                Logger.newLine();
+                Logger.error("Skipping - Error scanning directory '" + directory + "'", ex, context.isDisplayStackTrace());
+            }
+
+            for (ScanDirectoryTask subDirectoryTask : subDirectoryTasks) {
+                subDirectoryTask.join();
+            }
+        }
+
+        private BlockingDeque<FileToHash> getQueue() {
+            return StateGenerator.this.getQueue(directory, parentQueue);
+        }
+    }
+
+    /**
+     * Scan the changed paths. The .fimignore of their parent directories are loaded from the root directory, like in a full scan.
+     * The deleted paths are skipped, their files are removed from the State as they are not found.
+     */
+    private class ScanChangedPathsTask extends RecursiveAction {
+        private final Set<String> pathsToScan;
+        private final FimIgnore initialFimIgnore;
+        private final Map<Path, Optional<FimIgnore>> directoryFimIgnores = new HashMap<>();
+
+        ScanChangedPathsTask(Set<String> pathsToScan, FimIgnore initialFimIgnore) {
+            this.pathsToScan = pathsToScan;
+            this.initialFimIgnore = initialFimIgnore;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanDirectoryTask> subDirectoryTasks = new ArrayList<>();
+            for (String path : pathsToScan) {
+                Path file = rootDir.resolve(path);
+                BasicFileAttributes attributes;
+                try {
+                    attributes = readAttributes(file);
+                } catch (NoSuchFileException ex) {
+                    continue;
+                } catch (IOException ex) {
+                    Logger.newLine();
+                    Logger.error("Skipping - Error scanning '" + file + "'", ex, context.isDisplayStackTrace());
+                    continue;
+                }
 
-            for (Path file : stream) {
-                if (!hashProgress.isHashStarted() && filesToHashQueue.size() > FILES_QUEUE_CAPACITY / 2) {
-                    startFileHashers();
+                Path directory = file.getParent();
+                FimIgnore fimIgnore = getFimIgnore(directory).orElse(null);
+                if (fimIgnore == null) {
+                    continue; // Inside an ignored directory
                 }
 
-                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                BlockingDeque<FileToHash> queue = getQueue(directory, filesToHashQueue);
                 String fileName = file.getFileName().toString();
                 if (fimIgnoreManager.isIgnored(fileName, attributes, fimIgnore)) {
                     fimIgnoreManager.ignoreThisFiles(file, attributes);
-                } else {
-                    if (attributes.isRegularFile()) {
-                        if (FilePattern.matchPatterns(fileName, context.getIncludePatterns(), true) &&
-                            !FilePattern.matchPatterns(fileName, context.getExcludePatterns(), false)) {
-                            enqueueFile(filesToHashQueue, file);
+                } else if (attributes.isRegularFile()) {
+                    if (matchPatterns(fileName)) {
+                        scheduleFile(queue, new FileToHash(file, attributes));
+                    }
+                } else if (attributes.isDirectory()) {
+                    ScanDirectoryTask subDirectoryTask = new ScanDirectoryTask(file, fimIgnore, queue);
+                    subDirectoryTask.fork();
+                    subDirectoryTasks.add(subDirectoryTask);
+                }
+            }
+
+            for (ScanDirectoryTask subDirectoryTask : subDirectoryTasks) {
+                subDirectoryTask.join();
+            }
+        }
+
+        /**
+         * @return the FimIgnore of the directory, or empty if it is ignored
+         */
+        private Optional<FimIgnore> getFimIgnore(Path directory) {
+            Optional<FimIgnore> fimIgnore = directoryFimIgnores.get(directory);
+            if (fimIgnore != null) {
+                return fimIgnore;
+            }
+
+            if (directory.equals(rootDir)) {
+                fimIgnore = Optional.of(fimIgnoreManager.loadLocalIgnore(directory, initialFimIgnore));
+            } else {
+                fimIgnore = getFimIgnore(directory.getParent());
+                if (fimIgnore.isPresent()) {
+                    try {
+                        BasicFileAttributes attributes = readAttributes(directory);
+                        if (fimIgnoreManager.isIgnored(directory.getFileName().toString(), attributes, fimIgnore.get())) {
+                            fimIgnore = Optional.empty();
+                        } else {
+                            fimIgnore = Optional.of(fimIgnoreManager.loadLocalIgnore(directory, fimIgnore.get()));
                         }
-                    } else if (attributes.isDirectory()) {
-                        scanFileTree(filesToHashQueue, file, fimIgnore);
+                    } catch (IOException ex) {
+                        fimIgnore = Optional.empty();
                     }
                 }
             }
-        } catch (IOException ex) {
-            Logger.newLine();
-            Logger.error("Skipping - Error scanning directory '" + directory + "'", ex, context.isDisplayStackTrace());
+            directoryFimIgnores.put(directory, fimIgnore);
+            return fimIgnore;
+        }
+    }
+
+    private BlockingDeque<FileToHash> getQueue(Path directory, BlockingDeque<FileToHash> defaultQueue) {
+        if (!context.isHashPerDevice()) {
+            return defaultQueue;
+        }
+        Object deviceId = getDeviceId(directory);
+        return deviceId == null ? defaultQueue : getDeviceQueue(deviceId);
+    }
+
+    private boolean matchPatterns(String fileName) {
+        return FilePattern.isSelected(fileName, context.getIncludePatterns(), context.getExcludePatterns());
+    }
+
+    /**
+     * Read all the attributes that the FileHasher needs, so that each file is stat'ed only once.
+     */
+    private BasicFileAttributes readAttributes(Path file) throws IOException {
+        if (SystemUtils.IS_OS_WINDOWS) {
+            return Files.readAttributes(file, DosFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+        return Files.readAttributes(file, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    private void scheduleFile(BlockingDeque<FileToHash> queue, FileToHash fileToHash) {
+        if (context.isInodeOrder()) {
+            inodeSortedBatches.computeIfAbsent(queue, key -> new InodeSortedBatch(FILES_QUEUE_CAPACITY, file -> enqueueFile(key, file)))
+                    .add(fileToHash);
+        } else {
+            enqueueFile(queue, fileToHash);
         }
     }
 
-    private void enqueueFile(BlockingDeque<Path> filesToHashQueue, Path file) {
+    private void enqueueFile(BlockingDeque<FileToHash> filesToHashQueue, FileToHash fileToHash) {
         try {
-            filesToHashQueue.offer(file, 120, TimeUnit.MINUTES);
+            filesToHashQueue.offer(fileToHash, 120, TimeUnit.MINUTES);
         } catch (InterruptedException ex) {
-            Logger.error("Exception while enqueuing file '" + file + "'", ex, context.isDisplayStackTrace());
+            Logger.error("Exception while enqueuing file '" + fileToHash.file() + "'", ex, context.isDisplayStackTrace());
         }
     }
 }
@@ -24,16 +24,19 @@ import org.fim.model.CorruptedStateException;
 import org.fim.model.FileHash;
 import org.fim.model.FileState;
 import org.fim.model.State;
+import org.fim.model.StateFormat;
 import org.fim.util.Logger;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.function.Consumer;
 
 import static org.fim.model.Constants.NO_HASH;
+import static org.fim.model.HashMode.dontHash;
 
 public class StateManager {
-    public static final String STATE_EXTENSION = ".json.gz";
+    public static final String STATE_EXTENSION = StateFormat.json.getExtension();
 
     private final Context context;
 
@@ -44,8 +47,39 @@ public class StateManager {
     public void createNewState(State state) throws IOException {
         int lastStateNumber = getLastStateNumber();
         lastStateNumber++;
-        state.saveToGZipFile(getStateFile(lastStateNumber));
+        StateFormat stateFormat = new SettingsManager(context).getStateFormat();
+        state.saveToFile(getStateFile(lastStateNumber, stateFormat));
         saveLastStateNumber(lastStateNumber);
+        updateHashIndex(lastStateNumber, state);
+    }
+
+    /**
+     * Keep the hash index in sync with the last State, so that this repository can be used as master by 'rdup -M' without loading the State.
+     * An index that could not be updated is deleted, as a rollback followed by a new commit could reuse its State number.
+     */
+    private void updateHashIndex(int stateNumber, State state) {
+        HashIndex hashIndex = new HashIndex(context);
+        try {
+            if (state.getHashMode() == dontHash) {
+                hashIndex.delete();
+            } else {
+                hashIndex.update(stateNumber, state);
+            }
+        } catch (IOException ex) {
+            Logger.error("Error updating the hash index", ex, context.isDisplayStackTrace());
+            deleteHashIndex();
+        }
+    }
+
+    /**
+     * Delete the hash index. 'rdup -M' loads the State of the master until the next commit builds it again.
+     */
+    public void deleteHashIndex() {
+        try {
+            new HashIndex(context).delete();
+        } catch (IOException ex) {
+            Logger.error("Error deleting the hash index", ex, context.isDisplayStackTrace());
+        }
     }
 
     public State loadLastState() throws IOException {
@@ -68,7 +102,7 @@ public class StateManager {
         }
 
         try {
-            State state = State.loadFromGZipFile(stateFile, loadFullState);
+            State state = State.loadFromFile(stateFile, loadFullState);
 
             if (loadFullState) {
                 adjustAccordingToHashMode(state);
@@ -80,6 +114,23 @@ public class StateManager {
         }
     }
 
+    /**
+     * Load only the header of a State, passing each FileState to the fileStateConsumer without keeping them in memory.
+     */
+    public State loadStateHeader(int stateNumber, Consumer<FileState> fileStateConsumer) throws IOException {
+        Path stateFile = getStateFile(stateNumber);
+        if (!Files.exists(stateFile)) {
+            throw new IllegalStateException(
+                    String.format("Unable to load State file %d from directory %s", stateNumber, context.getRepositoryStatesDir()));
+        }
+
+        try {
+            return State.loadHeaderFromFile(stateFile, fileStateConsumer);
+        } catch (CorruptedStateException e) {
+            throw new IllegalStateException(String.format("The content of the State file #%d have been modified and may be corrupted", stateNumber));
+        }
+    }
+
     private void adjustAccordingToHashMode(State state) {
         // Replace by 'no_hash' accurately to be able to compare the FileState entry
         // Keep the original hash before changing by 'no_hash' in order to fill correctly the previousFileState
@@ -111,10 +162,23 @@ public class StateManager {
     }
 
     /**
-     * @return the State file formatted like this: &lt;statesDir&gt;/state_&lt;stateNumber&gt;.json.gz
+     * @return the existing State file, whatever its format, or the State file using the format of the repository if it does not exist
      */
     public Path getStateFile(int stateNumber) {
-        return context.getRepositoryStatesDir().resolve("state_" + stateNumber + STATE_EXTENSION);
+        for (StateFormat stateFormat : StateFormat.values()) {
+            Path stateFile = getStateFile(stateNumber, stateFormat);
+            if (Files.exists(stateFile)) {
+                return stateFile;
+            }
+        }
+        return getStateFile(stateNumber, new SettingsManager(context).getStateFormat());
+    }
+
+    /**
+     * @return the State file formatted like this: &lt;statesDir&gt;/state_&lt;stateNumber&gt;&lt;extension of the format&gt;
+     */
+    public Path getStateFile(int stateNumber, StateFormat stateFormat) {
+        return context.getRepositoryStatesDir().resolve("state_" + stateNumber + stateFormat.getExtension());
     }
 
     public int getLastStateNumber() {
@@ -45,9 +45,13 @@ public class StateReGenerator extends StateGenerator {
     }
 
     public void reHashFiles(List<FileState> toReHash) throws NoSuchAlgorithmException {
+        reHashFiles(toReHash, "Retrieving the missing hash for all the modified files");
+    }
+
+    public void reHashFiles(List<FileState> toReHash, String description) throws NoSuchAlgorithmException {
         int threadCount = context.getThreadCount();
-        Logger.info(String.format("Retrieving the missing hash for all the modified files, using '%s' mode and %d %s",
-                hashModeToString(context.getHashMode()), threadCount, plural("thread", threadCount)));
+        Logger.info(String.format("%s, using '%s' mode and %d %s",
+                description, hashModeToString(context.getHashMode()), threadCount, plural("thread", threadCount)));
 
         rootDir = context.getRepositoryRootDir();
 
@@ -29,8 +29,6 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 public abstract class AbstractHasher implements Hasher {
-    public static final String HASH_ALGORITHM = "SHA-512";
-
     private final Context context;
     private final boolean active;
 
@@ -50,7 +48,7 @@ public abstract class AbstractHasher implements Hasher {
         }
 
         if (this.active) {
-            this.digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            this.digest = context.getHashAlgorithm().createMessageDigest();
         }
     }
 
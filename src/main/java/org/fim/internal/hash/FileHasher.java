@@ -19,13 +19,14 @@
 
 package org.fim.internal.hash;
 
-import org.apache.commons.lang3.SystemUtils;
 import org.fim.command.exception.FimInternalError;
 import org.fim.model.Attribute;
 import org.fim.model.Context;
 import org.fim.model.FileAttribute;
 import org.fim.model.FileHash;
+import org.fim.model.FileReadMode;
 import org.fim.model.FileState;
+import org.fim.model.FileTime;
 import org.fim.model.HashMode;
 import org.fim.model.Range;
 import org.fim.util.DosFilePermissions;
@@ -33,11 +34,15 @@ import org.fim.util.FileUtil;
 import org.fim.util.Logger;
 import org.fim.util.SELinux;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.DosFileAttributes;
@@ -46,36 +51,51 @@ import java.nio.file.attribute.PosixFilePermissions;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.fim.model.Constants.NO_HASH;
+import static org.fim.model.Constants.SIZE_1_MB;
 import static org.fim.model.HashMode.dontHash;
+import static org.fim.model.HashMode.hashAll;
 
 public class FileHasher implements Runnable {
+    public static final int READ_BUFFER_SIZE = 4 * SIZE_1_MB;
+    // In auto mode, files up to this size are read instead of being mapped, as for them the mapping setup costs more than the read
+    public static final int AUTO_READ_MAX_FILE_SIZE = SIZE_1_MB;
+
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
     protected final Context context;
-    private final AtomicBoolean scanInProgress;
     final HashProgress hashProgress;
 
-    private final BlockingDeque<Path> filesToHashQueue;
+    private final BlockingDeque<FileToHash> filesToHashQueue;
     private final String rootDir;
     private final List<FileState> fileStates;
     private final FrontHasher frontHasher;
+    private final TreeHasher treeHasher;
+    private Map<String, FileState> previousFileStates;
+    private XattrHashCache xattrHashCache;
+    private ByteBuffer readBuffer; // Allocated on first use, and then reused for all the files
 
-    private Method clean = null;
-    private boolean cleanInitialized = false;
-
-    public FileHasher(Context context, AtomicBoolean scanInProgress, HashProgress hashProgress, BlockingDeque<Path> filesToHashQueue, String rootDir)
+    public FileHasher(Context context, HashProgress hashProgress, BlockingDeque<FileToHash> filesToHashQueue, String rootDir)
             throws NoSuchAlgorithmException {
         this.context = context;
-        this.scanInProgress = scanInProgress;
         this.hashProgress = hashProgress;
         this.filesToHashQueue = filesToHashQueue;
         this.rootDir = rootDir;
 
         this.fileStates = new ArrayList<>();
         this.frontHasher = new FrontHasher(context);
+        this.treeHasher = new TreeHasher(context);
+    }
+
+    public void setPreviousFileStates(Map<String, FileState> previousFileStates) {
+        this.previousFileStates = previousFileStates;
+    }
+
+    public void setXattrHashCache(XattrHashCache xattrHashCache) {
+        this.xattrHashCache = xattrHashCache;
     }
 
     public List<FileState> getFileStates() {
@@ -83,7 +103,7 @@ public class FileHasher implements Runnable {
     }
 
     public long getTotalBytesHashed() {
-        return frontHasher.getTotalBytesHashed();
+        return frontHasher.getTotalBytesHashed() + treeHasher.getTotalBytesHashed();
     }
 
     FrontHasher getFrontHasher() {
@@ -92,60 +112,104 @@ public class FileHasher implements Runnable {
 
     @Override
     public void run() {
+        boolean retired = false;
         try {
-            while (isQueueStillFilled()) {
-                hashFilesInQueue();
-                if (isQueueStillFilled()) {
-                    // Wait for the scanFileTree() to fill the queue
-                    Thread.sleep(500);
-                }
-            }
+            retired = hashFilesInQueue();
         } catch (InterruptedException ex) {
             Logger.error("Exception while hashing", ex, context.isDisplayStackTrace());
         } finally {
-            // The queue is empty so all the other FileHasher will do the same
-            hashProgress.noMoreFileToHash();
+            if (!retired) {
+                // The end of the stream is reached so all the other FileHasher will do the same
+                hashProgress.noMoreFileToHash();
+            }
         }
     }
 
-    private void hashFilesInQueue() throws InterruptedException {
-        Path file;
-        while ((file = filesToHashQueue.poll(100, TimeUnit.MILLISECONDS)) != null) {
+    /**
+     * @return true if this FileHasher was retired by the dynamic scaling before the end of the stream.
+     */
+    private boolean hashFilesInQueue() throws InterruptedException {
+        FileToHash fileToHash;
+        while (!(fileToHash = filesToHashQueue.take()).isEndOfStream()) {
+            Path file = fileToHash.file();
             try {
-                BasicFileAttributes attributes;
+                BasicFileAttributes attributes = fileToHash.attributes();
                 List<Attribute> fileAttributes = null;
 
-                if (SystemUtils.IS_OS_WINDOWS) {
-                    DosFileAttributes dosFileAttributes = Files.readAttributes(file, DosFileAttributes.class);
+                if (attributes instanceof DosFileAttributes dosFileAttributes) {
                     fileAttributes = addAttribute(fileAttributes, FileAttribute.DosFilePermissions, DosFilePermissions.toString(dosFileAttributes));
-                    attributes = dosFileAttributes;
-                } else {
-                    PosixFileAttributes posixFileAttributes = Files.readAttributes(file, PosixFileAttributes.class);
+                } else if (attributes instanceof PosixFileAttributes posixFileAttributes) {
                     fileAttributes = addAttribute(fileAttributes, FileAttribute.PosixFilePermissions,
                             PosixFilePermissions.toString(posixFileAttributes.permissions()));
                     if (SELinux.ENABLED) {
                         fileAttributes = addAttribute(fileAttributes, FileAttribute.SELinuxLabel, SELinux.getLabel(context, file));
                     }
-                    attributes = posixFileAttributes;
                 }
 
                 hashProgress.updateOutput(attributes.size());
                 context.getDynamicScaling().fileProcessed(attributes.size());
 
-                FileHash fileHash = hashFile(file, attributes.size());
                 String normalizedFileName = FileUtil.getNormalizedFileName(file);
                 String relativeFileName = FileUtil.getRelativeFileName(rootDir, normalizedFileName);
+                FileHash fileHash = getPreviousFileHash(relativeFileName, attributes);
+                if (fileHash == null && xattrHashCache != null) {
+                    fileHash = xattrHashCache.read(file, attributes);
+                }
+                if (fileHash == null) {
+                    fileHash = hashFile(file, attributes.size());
+                    if (xattrHashCache != null) {
+                        xattrHashCache.write(file, attributes, fileHash);
+                    }
+                }
 
                 fileStates.add(new FileState(relativeFileName, attributes, fileHash, fileAttributes));
             } catch (Exception ex) {
                 Logger.newLine();
                 Logger.error("Skipping - Error hashing file '" + file + "'", ex, context.isDisplayStackTrace());
             }
+
+            if (context.getDynamicScaling().shouldRetire()) {
+                return true;
+            }
+        }
+        // Give the end of the stream back for the other FileHashers
+        filesToHashQueue.put(fileToHash);
+        return false;
+    }
+
+    /**
+     * @return the hash of the previous State if the file has the same size and exactly the same dates, or null if the file must be hashed.
+     */
+    private FileHash getPreviousFileHash(String relativeFileName, BasicFileAttributes attributes) {
+        if (previousFileStates == null) {
+            return null;
+        }
+
+        FileState previousFileState = previousFileStates.get(relativeFileName);
+        if (previousFileState == null || previousFileState.getFileLength() != attributes.size()) {
+            return null;
+        }
+
+        FileTime previousFileTime = previousFileState.getFileTime();
+        if (previousFileTime.getCreationTime() != attributes.creationTime().toMillis() ||
+            previousFileTime.getLastModified() != attributes.lastModifiedTime().toMillis()) {
+            return null;
+        }
+
+        FileHash previousFileHash = previousFileState.getFileHash();
+        if (!isHashComplete(previousFileHash)) {
+            return null;
         }
+        return previousFileHash.clone();
     }
 
-    private boolean isQueueStillFilled() {
-        return scanInProgress.get() || !filesToHashQueue.isEmpty();
+    private boolean isHashComplete(FileHash fileHash) {
+        return switch (context.getHashMode()) {
+            case dontHash -> true;
+            case hashSmallBlock -> !NO_HASH.equals(fileHash.getSmallBlockHash());
+            case hashMediumBlock -> !NO_HASH.equals(fileHash.getMediumBlockHash());
+            case hashAll -> !NO_HASH.equals(fileHash.getFullHash());
+        };
     }
 
     private List<Attribute> addAttribute(List<Attribute> attributes, FileAttribute attribute, String value) {
@@ -170,12 +234,22 @@ public class FileHasher implements Runnable {
             return new FileHash(NO_HASH, NO_HASH, NO_HASH);
         }
 
-        frontHasher.reset(fileSize);
+        boolean treeHashed = hashMode == hashAll && treeHasher.isTreeHashed(fileSize);
+        if (treeHashed) {
+            frontHasher.resetWithoutFullHash(fileSize);
+        } else {
+            frontHasher.reset(fileSize);
+        }
 
         long filePosition = 0;
         long blockSize;
         int bufferSize;
 
+        FileReadMode readMode = context.getFileReadMode();
+        if (readMode == FileReadMode.auto) {
+            readMode = fileSize <= AUTO_READ_MAX_FILE_SIZE ? FileReadMode.read : FileReadMode.mmap;
+        }
+
         try (FileChannel channel = FileChannel.open(file)) {
             while (filePosition < fileSize) {
                 Range nextRange = frontHasher.getNextRange(filePosition);
@@ -185,19 +259,33 @@ public class FileHasher implements Runnable {
 
                 filePosition = nextRange.getFrom();
                 blockSize = nextRange.getTo() - nextRange.getFrom();
-                bufferSize = hashBuffer(channel, filePosition, blockSize);
+                if (readMode == FileReadMode.read && blockSize <= READ_BUFFER_SIZE) {
+                    bufferSize = readAndHashBuffer(channel, filePosition, (int) blockSize);
+                } else {
+                    bufferSize = hashBuffer(channel, filePosition, blockSize);
+                }
                 filePosition += bufferSize;
             }
+
+            if (treeHashed) {
+                FileHash fileHash = frontHasher.getFileHash();
+                fileHash.setFullHash(treeHasher.hash(channel, fileSize));
+                checkHashComplete(file, fileSize);
+                return fileHash;
+            }
         }
 
+        checkHashComplete(file, fileSize);
+        return frontHasher.getFileHash();
+    }
+
+    private void checkHashComplete(Path file, long fileSize) {
         if (!frontHasher.hashComplete()) {
             throw new FimInternalError(String.format(
                     "Fim is not working correctly for file '%s' (size=%d). Some Hasher have not completed: small=%s, medium=%s, full=%s",
                     file, fileSize, frontHasher.getSmallBlockHasher().hashComplete(), frontHasher.getMediumBlockHasher().hashComplete(),
                     frontHasher.getFullHasher().hashComplete()));
         }
-
-        return frontHasher.getFileHash();
     }
 
     private int hashBuffer(FileChannel channel, long filePosition, long size) throws IOException {
@@ -214,32 +302,59 @@ public class FileHasher implements Runnable {
         }
     }
 
-    /**
-     * Use reflection to avoid problems with non-SUN virtual machines.
-     * As mentioned in: https://stackoverflow.com/questions/2972986/how-to-unmap-a-file-from-memory-mapped-using-filechannel-in-java/19447758#19447758
-     * Original implementation comes from: https://stackoverflow.com/questions/8553158/prevent-outofmemory-when-using-java-nio-mappedbytebuffer
-     */
-    private void unmap(MappedByteBuffer bb) {
-        if (!cleanInitialized) {
-            try {
-                cleanInitialized = true;
-                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
-                clean.setAccessible(true);
-            } catch (Exception ex) {
-                // This method might not exist
+    private int readAndHashBuffer(FileChannel channel, long filePosition, int size) throws IOException {
+        if (readBuffer == null) {
+            readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        }
+
+        readBuffer.clear().limit(size);
+        while (readBuffer.hasRemaining()) {
+            if (channel.read(readBuffer, filePosition + readBuffer.position()) < 0) {
+                throw new EOFException(String.format("File truncated while reading %d bytes at position %d", size, filePosition));
             }
         }
+        readBuffer.flip();
+
+        // The BlockHashers rely on the capacity of the buffer, so give them a buffer that contains only the bytes read
+        frontHasher.update(filePosition, readBuffer.slice());
 
-        if (clean == null || bb == null || !bb.isDirect()) {
+        return size;
+    }
+
+    /**
+     * Release the mapping right away instead of waiting for the GC, so that the mapped memory and the address space do not grow.
+     * The buffer must not be used after that.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null || buffer == null) {
             return;
         }
 
         try {
-            Method cleaner = bb.getClass().getMethod("cleaner");
-            cleaner.setAccessible(true);
-            clean.invoke(cleaner.invoke(bb));
-        } catch (Exception ex) {
-            // Never mind the buffer will be cleaner a bit later by the JVM
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (RuntimeException ex) {
+            // Never mind the buffer will be unmapped a bit later by the GC
+        } catch (Throwable ex) {
+            throw new FimInternalError(String.format("Not able to unmap a buffer: %s", ex.getMessage()));
+        }
+    }
+
+    /**
+     * sun.misc.Unsafe.invokeCleaner() is exported by the jdk.unsupported module, so it does not require any '--add-opens'.
+     * Mapping the file with a confined Arena would do the same, but the FFM API is only a preview feature of Java 21.
+     *
+     * @return a MethodHandle bound to the Unsafe instance, or null if it is not available on this JVM
+     */
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
         }
     }
 
@@ -28,7 +28,6 @@ import org.fim.util.Logger;
 import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.TimeUnit;
 
 public class FileReHasher extends FileHasher {
     private final BlockingDeque<FileState> toRehashQueue;
@@ -36,7 +35,7 @@ public class FileReHasher extends FileHasher {
 
     public FileReHasher(Context context, HashProgress hashProgress, BlockingDeque<FileState> toRehashQueue, Path rootDir)
             throws NoSuchAlgorithmException {
-        super(context, null, hashProgress, null, FileUtil.getNormalizedFileName(rootDir));
+        super(context, hashProgress, null, FileUtil.getNormalizedFileName(rootDir));
         this.toRehashQueue = toRehashQueue;
         this.rootDir = rootDir;
     }
@@ -45,7 +44,8 @@ public class FileReHasher extends FileHasher {
     public void run() {
         try {
             FileState fileState;
-            while ((fileState = toRehashQueue.poll(100, TimeUnit.MILLISECONDS)) != null) {
+            // The queue is completely filled before the FileReHashers start, so it is done once empty
+            while ((fileState = toRehashQueue.poll()) != null) {
                 try {
                     long fileLength = fileState.getFileLength();
                     hashProgress.updateOutput(fileLength);
@@ -57,8 +57,6 @@ public class FileReHasher extends FileHasher {
                     Logger.error("Skipping - Error hashing file '" + fileState.getFileName() + "'", ex, context.isDisplayStackTrace());
                 }
             }
-        } catch (InterruptedException ex) {
-            Logger.error("Exception while hashing", ex, context.isDisplayStackTrace());
         } finally {
             hashProgress.noMoreFileToHash();
         }
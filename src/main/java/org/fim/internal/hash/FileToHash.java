@@ -17,43 +17,22 @@
  * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package org.fim.model.output;
+package org.fim.internal.hash;
 
-public class DuplicatedFile {
-    private String path;
-    private String name;
-    private long length;
-    private String type;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
-    public String getPath() {
-        return path;
-    }
-
-    public void setPath(String path) {
-        this.path = path;
-    }
-
-    public String getName() {
-        return name;
-    }
-
-    public void setName(String name) {
-        this.name = name;
-    }
-
-    public long getLength() {
-        return length;
-    }
-
-    public void setLength(long length) {
-        this.length = length;
-    }
-
-    public String getType() {
-        return type;
-    }
-
-    public void setType(String type) {
-        this.type = type;
+/**
+ * A file found by the scanner, with the attributes it already read.
+ * The attributes are PosixFileAttributes, or DosFileAttributes on Windows, so that the FileHasher does not need to read them again.
+ */
+public record FileToHash(Path file, BasicFileAttributes attributes) {
+    /**
+     * Put in the queue once the scan is done. The FileHasher that takes it puts it back so that all the other FileHashers stop too.
+     */
+    public static final FileToHash END_OF_STREAM = new FileToHash(null, null);
+
+    public boolean isEndOfStream() {
+        return this == END_OF_STREAM;
     }
 }
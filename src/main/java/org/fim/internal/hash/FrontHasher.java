@@ -33,6 +33,7 @@ public class FrontHasher implements Hasher {
     private final BlockHasher smallBlockHasher;
     private final BlockHasher mediumBlockHasher;
     private final Hasher fullHasher;
+    private boolean fullHashSkipped;
 
     public FrontHasher(Context context) throws NoSuchAlgorithmException {
         this.smallBlockHasher = new SmallBlockHasher(context);
@@ -50,6 +51,19 @@ public class FrontHasher implements Hasher {
         smallBlockHasher.reset(fileSize);
         mediumBlockHasher.reset(fileSize);
         fullHasher.reset(fileSize);
+        fullHashSkipped = false;
+    }
+
+    /**
+     * Reset for a file whose full hash is computed by the TreeHasher. Only the small and medium blocks are hashed.
+     */
+    public void resetWithoutFullHash(long fileSize) {
+        reset(fileSize);
+        fullHashSkipped = true;
+    }
+
+    private boolean isFullHashActive() {
+        return fullHasher.isActive() && !fullHashSkipped;
     }
 
     @Override
@@ -58,7 +72,7 @@ public class FrontHasher implements Hasher {
         Range nextMediumRange;
         Range nextFullRange;
 
-        if (fullHasher.isActive()) {
+        if (isFullHashActive()) {
             nextSmallRange = smallBlockHasher.getNextRange(filePosition);
             nextMediumRange = mediumBlockHasher.getNextRange(filePosition);
             nextFullRange = fullHasher.getNextRange(filePosition);
@@ -105,7 +119,9 @@ public class FrontHasher implements Hasher {
     public void update(long filePosition, ByteBuffer buffer) {
         update(smallBlockHasher, filePosition, buffer);
         update(mediumBlockHasher, filePosition, buffer);
-        update(fullHasher, filePosition, buffer);
+        if (!fullHashSkipped) {
+            update(fullHasher, filePosition, buffer);
+        }
     }
 
     private void update(Hasher hasher, long filePosition, ByteBuffer buffer) {
@@ -152,7 +168,7 @@ public class FrontHasher implements Hasher {
 
     @Override
     public boolean hashComplete() {
-        return smallBlockHasher.hashComplete() && mediumBlockHasher.hashComplete() && fullHasher.hashComplete();
+        return smallBlockHasher.hashComplete() && mediumBlockHasher.hashComplete() && (fullHashSkipped || fullHasher.hashComplete());
     }
 
     public FileHash getFileHash() {
@@ -20,6 +20,7 @@
 package org.fim.internal.hash;
 
 import org.fim.model.Context;
+import org.fim.model.FileReadMode;
 import org.fim.model.HashMode;
 import org.fim.model.Range;
 import org.fim.util.HashModeUtil;
@@ -33,11 +34,15 @@ import static org.fim.model.HashMode.hashAll;
 
 public class FullHasher extends AbstractHasher {
     public static final int BLOCK_SIZE = 30 * SIZE_1_MB;
+    // Together with a medium block it must fit into the read buffer of the FileHasher
+    public static final int READ_BLOCK_SIZE = 2 * SIZE_1_MB;
 
+    private final int blockSize;
     private long fileSize;
 
     public FullHasher(Context context) throws NoSuchAlgorithmException {
         super(context);
+        this.blockSize = context.getFileReadMode() == FileReadMode.read ? READ_BLOCK_SIZE : BLOCK_SIZE;
     }
 
     @Override
@@ -57,7 +62,7 @@ public class FullHasher extends AbstractHasher {
     @Override
     public Range getNextRange(long filePosition) {
         long from = filePosition;
-        long to = min(fileSize, filePosition + BLOCK_SIZE);
+        long to = min(fileSize, filePosition + blockSize);
         return new Range(from, to);
     }
 
@@ -0,0 +1,147 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal.hash;
+
+import org.fim.command.exception.FimInternalError;
+import org.fim.model.Context;
+import org.fim.model.FileReadMode;
+import org.fim.util.Ascii85Util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.min;
+
+/**
+ * Hash a huge file by segments in parallel, so that it does not keep a single FileHasher busy while the other cores are idle.
+ * Each segment is hashed on its own, and the tree hash is the hash of all the segment hashes in the file order.
+ * It replaces the full hash of the files bigger than one segment. The segment size is recorded in the State, as the tree hash depends on it.
+ */
+public class TreeHasher {
+    // Shared by all the FileHashers, so that several huge files do not start more threads than there are cores
+    private static final ExecutorService SEGMENT_HASHERS = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "TreeHasher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // One read buffer per segment hasher thread, as allocating a direct buffer for each segment is costly
+    private static final ThreadLocal<ByteBuffer> READ_BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(FullHasher.READ_BLOCK_SIZE));
+
+    private final Context context;
+    private final long segmentSize;
+    private final AtomicLong totalBytesHashed;
+
+    public TreeHasher(Context context) {
+        this.context = context;
+        this.segmentSize = context.getTreeHashSegmentSize();
+        this.totalBytesHashed = new AtomicLong(0);
+    }
+
+    /**
+     * @return true if the full hash of a file of this size must be a tree hash.
+     */
+    public boolean isTreeHashed(long fileSize) {
+        return segmentSize > 0 && fileSize > segmentSize;
+    }
+
+    public long getTotalBytesHashed() {
+        return totalBytesHashed.get();
+    }
+
+    public String hash(FileChannel channel, long fileSize) throws IOException {
+        List<Future<byte[]>> segmentHashes = new ArrayList<>();
+        for (long from = 0; from < fileSize; from += segmentSize) {
+            long segmentStart = from;
+            long segmentEnd = min(fileSize, from + segmentSize);
+            segmentHashes.add(SEGMENT_HASHERS.submit(() -> hashSegment(channel, segmentStart, segmentEnd)));
+        }
+
+        MessageDigest treeDigest = createMessageDigest();
+        try {
+            for (Future<byte[]> segmentHash : segmentHashes) {
+                treeDigest.update(segmentHash.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing the segments");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new FimInternalError(String.format("Not able to hash a segment: %s", ex.getCause().getMessage()));
+        } finally {
+            // Do not keep reading a file that failed
+            segmentHashes.forEach(segmentHash -> segmentHash.cancel(false));
+        }
+        return Ascii85Util.encode(treeDigest.digest());
+    }
+
+    private byte[] hashSegment(FileChannel channel, long segmentStart, long segmentEnd) throws IOException {
+        MessageDigest segmentDigest = createMessageDigest();
+        if (context.getFileReadMode() == FileReadMode.read) {
+            ByteBuffer buffer = READ_BUFFERS.get();
+            for (long position = segmentStart; position < segmentEnd; position += buffer.limit()) {
+                buffer.clear().limit((int) min(FullHasher.READ_BLOCK_SIZE, segmentEnd - position));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new EOFException(String.format("File truncated while reading %d bytes at position %d", buffer.limit(), position));
+                    }
+                }
+                buffer.flip();
+                segmentDigest.update(buffer);
+                totalBytesHashed.addAndGet(buffer.limit());
+            }
+        } else {
+            for (long position = segmentStart; position < segmentEnd; position += FullHasher.BLOCK_SIZE) {
+                MappedByteBuffer buffer = null;
+                try {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, min(FullHasher.BLOCK_SIZE, segmentEnd - position));
+                    int bufferSize = buffer.remaining();
+                    segmentDigest.update(buffer);
+                    totalBytesHashed.addAndGet(bufferSize);
+                } finally {
+                    FileHasher.unmap(buffer);
+                }
+            }
+        }
+        return segmentDigest.digest();
+    }
+
+    private MessageDigest createMessageDigest() {
+        try {
+            return context.getHashAlgorithm().createMessageDigest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new FimInternalError(String.format("Not able to create the '%s' hash algorithm: %s", context.getHashAlgorithm(), ex.getMessage()));
+        }
+    }
+}
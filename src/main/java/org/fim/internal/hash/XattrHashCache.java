@@ -0,0 +1,117 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal.hash;
+
+import org.fim.model.Context;
+import org.fim.model.FileHash;
+import org.fim.model.HashMode;
+import org.fim.util.HashModeUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+
+/**
+ * Keep the hash of each file into its 'user.fim.hash' extended attribute, with the size and dates of the file when it was hashed.
+ * Any later run, from this repository or from another one covering the same files, can take the hash from there
+ * as long as the file has still the same size and dates, instead of hashing it again.
+ * Errors are ignored, for example on file systems without user extended attributes, or on read-only files: the file is just hashed.
+ */
+public class XattrHashCache {
+    public static final String ATTRIBUTE_NAME = "fim.hash"; // The 'user.' namespace is added by the UserDefinedFileAttributeView
+
+    private static final String FORMAT_VERSION = "1";
+    private static final String SEPARATOR = "|"; // Never used by Ascii85
+    private static final int FIELD_COUNT = 10;
+
+    private final Context context;
+    private final boolean trusted;
+
+    /**
+     * @param trusted false to only write the hashes, when the content of all the files must really be read
+     */
+    public XattrHashCache(Context context, boolean trusted) {
+        this.context = context;
+        this.trusted = trusted && !context.isParanoid();
+    }
+
+    /**
+     * @return the hash kept in the extended attribute, or null if there is none or if the file changed since.
+     */
+    public FileHash read(Path file, BasicFileAttributes attributes) {
+        if (!trusted) {
+            return null;
+        }
+
+        try {
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+            if (view == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(view.size(ATTRIBUTE_NAME));
+            view.read(ATTRIBUTE_NAME, buffer);
+            buffer.flip();
+            return parse(StandardCharsets.UTF_8.decode(buffer).toString(), attributes);
+        } catch (IOException | UnsupportedOperationException ex) {
+            // No hash kept for this file
+            return null;
+        }
+    }
+
+    public void write(Path file, BasicFileAttributes attributes, FileHash fileHash) {
+        String value = String.join(SEPARATOR, FORMAT_VERSION, context.getHashAlgorithm().name(), String.valueOf(context.getTreeHashSegmentSize()),
+                String.valueOf(attributes.size()), String.valueOf(attributes.creationTime().toMillis()),
+                String.valueOf(attributes.lastModifiedTime().toMillis()), context.getHashMode().name(),
+                fileHash.getSmallBlockHash(), fileHash.getMediumBlockHash(), fileHash.getFullHash());
+        try {
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+            if (view != null) {
+                view.write(ATTRIBUTE_NAME, StandardCharsets.UTF_8.encode(value));
+            }
+        } catch (IOException | UnsupportedOperationException ex) {
+            // Never mind, the file will be hashed again the next time
+        }
+    }
+
+    private FileHash parse(String value, BasicFileAttributes attributes) {
+        String[] fields = value.split("\\" + SEPARATOR, -1);
+        if (fields.length != FIELD_COUNT || !FORMAT_VERSION.equals(fields[0])) {
+            return null;
+        }
+
+        try {
+            if (!context.getHashAlgorithm().name().equals(fields[1]) ||
+                Long.parseLong(fields[2]) != context.getTreeHashSegmentSize() ||
+                Long.parseLong(fields[3]) != attributes.size() ||
+                Long.parseLong(fields[4]) != attributes.creationTime().toMillis() ||
+                Long.parseLong(fields[5]) != attributes.lastModifiedTime().toMillis() ||
+                !HashModeUtil.isCompatible(HashMode.valueOf(fields[6]), context.getHashMode())) {
+                return null;
+            }
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        return new FileHash(fields[7], fields[8], fields[9]);
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.model;
+
+import org.apache.commons.codec.DecoderException;
+import org.fim.util.Ascii85Util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fim.model.Constants.NO_HASH;
+import static org.fim.util.Ascii85Util.UTF8;
+
+/**
+ * Read and write a State using a compact binary format.
+ * <p>
+ * The FileStates are stored by blocks of BLOCK_SIZE entries. Inside a block, each field is stored in its own column.
+ * File names are split in path segments that are stored once in a string table shared by all the blocks.
+ * Each block starts with the strings that it adds to the table. Hashes are stored as raw bytes instead of Ascii85 strings.
+ */
+public class BinaryStateIO {
+    public static final int MAGIC = 0x46494D53; // "FIMS"
+    public static final int FORMAT_VERSION = 3; // Version 2 adds the hash algorithm, version 3 the tree hash segment size
+
+    private static final int BLOCK_SIZE = 8_192;
+    private static final int BUFFER_SIZE = 64 * 1_024;
+
+    private static final int NO_HASH_LENGTH = 0;
+    private static final int ENCODED_HASH_LENGTH = 255;
+
+    private BinaryStateIO() {
+        // Utility class, no instantiation
+    }
+
+    public static void write(State state, Path stateFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(stateFile.toFile()), BUFFER_SIZE), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeHeader(out, state);
+
+            StringTable stringTable = new StringTable();
+            List<FileState> fileStates = state.getFileStates();
+            for (int from = 0; from < fileStates.size(); from += BLOCK_SIZE) {
+                List<FileState> block = fileStates.subList(from, Math.min(from + BLOCK_SIZE, fileStates.size()));
+                out.writeInt(block.size());
+                writeBlock(out, stringTable, block);
+            }
+            out.writeInt(0);
+        }
+    }
+
+    public static State read(Path stateFile) throws IOException, CorruptedStateException {
+        ArrayList<FileState> fileStates = new ArrayList<>();
+        State state = read(stateFile, fileStates::add);
+        state.setFileStates(fileStates);
+        return state;
+    }
+
+    /**
+     * Read the header of the State and pass the FileStates one by one to the fileStateConsumer.
+     * If fileStateConsumer is null, the reading stops after the header.
+     */
+    public static State read(Path stateFile, Consumer<FileState> fileStateConsumer) throws IOException, CorruptedStateException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(new FileInputStream(stateFile.toFile()), BUFFER_SIZE), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new CorruptedStateException();
+            }
+            int formatVersion = in.readInt();
+            if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+                throw new IOException(String.format("Unsupported binary State format version %d", formatVersion));
+            }
+
+            State state = new State();
+            readHeader(in, state, formatVersion);
+            if (fileStateConsumer == null) {
+                return state;
+            }
+
+            List<String> stringTable = new ArrayList<>();
+            int blockSize;
+            while ((blockSize = in.readInt()) > 0) {
+                readBlock(in, stringTable, blockSize).forEach(fileStateConsumer);
+            }
+            return state;
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, State state) throws IOException {
+        writeString(out, state.getStateHash());
+        writeString(out, state.getModelVersion());
+        out.writeLong(state.getTimestamp());
+        writeString(out, state.getComment());
+        out.writeInt(state.getFileCount());
+        out.writeLong(state.getFilesContentLength());
+        writeString(out, state.getHashMode().name());
+        writeString(out, state.getHashAlgorithm().name());
+        out.writeLong(state.getTreeHashSegmentSize());
+
+        CommitDetails commitDetails = state.getCommitDetails();
+        out.writeBoolean(commitDetails != null);
+        if (commitDetails != null) {
+            HashMode hashModeUsedToGetTheStatus = commitDetails.getHashModeUsedToGetTheStatus();
+            writeString(out, hashModeUsedToGetTheStatus != null ? hashModeUsedToGetTheStatus.name() : null);
+            writeString(out, commitDetails.getFromSubDirectory());
+        }
+
+        ModificationCounts counts = state.getModificationCounts();
+        out.writeBoolean(counts != null);
+        if (counts != null) {
+            out.writeInt(counts.getAdded());
+            out.writeInt(counts.getCopied());
+            out.writeInt(counts.getDuplicated());
+            out.writeInt(counts.getDateModified());
+            out.writeInt(counts.getContentModified());
+            out.writeInt(counts.getAttributesModified());
+            out.writeInt(counts.getRenamed());
+            out.writeInt(counts.getDeleted());
+            out.writeInt(counts.getCorrupted());
+        }
+
+        Set<String> ignoredFiles = state.getIgnoredFiles();
+        out.writeInt(ignoredFiles.size());
+        for (String ignoredFile : ignoredFiles) {
+            writeString(out, ignoredFile);
+        }
+    }
+
+    private static void readHeader(DataInputStream in, State state, int formatVersion) throws IOException {
+        state.setStateHash(readString(in));
+        state.setModelVersion(readString(in));
+        state.setTimestamp(in.readLong());
+        state.setComment(readString(in));
+        state.setFileCount(in.readInt());
+        state.setFilesContentLength(in.readLong());
+        state.setHashMode(HashMode.valueOf(readString(in)));
+        state.setHashAlgorithm(formatVersion >= 2 ? HashAlgorithm.valueOf(readString(in)) : HashAlgorithm.sha512);
+        state.setTreeHashSegmentSize(formatVersion >= 3 ? in.readLong() : 0);
+
+        CommitDetails commitDetails = null;
+        if (in.readBoolean()) {
+            String hashModeUsedToGetTheStatus = readString(in);
+            commitDetails = new CommitDetails(hashModeUsedToGetTheStatus != null ? HashMode.valueOf(hashModeUsedToGetTheStatus) : null,
+                    readString(in));
+        }
+        state.setCommitDetails(commitDetails);
+
+        ModificationCounts counts = null;
+        if (in.readBoolean()) {
+            counts = new ModificationCounts();
+            counts.setAdded(in.readInt());
+            counts.setCopied(in.readInt());
+            counts.setDuplicated(in.readInt());
+            counts.setDateModified(in.readInt());
+            counts.setContentModified(in.readInt());
+            counts.setAttributesModified(in.readInt());
+            counts.setRenamed(in.readInt());
+            counts.setDeleted(in.readInt());
+            counts.setCorrupted(in.readInt());
+        }
+        state.setModificationCounts(counts);
+
+        int ignoredFileCount = in.readInt();
+        Set<String> ignoredFiles = new HashSet<>();
+        for (int index = 0; index < ignoredFileCount; index++) {
+            ignoredFiles.add(readString(in));
+        }
+        state.setIgnoredFiles(ignoredFiles);
+    }
+
+    private static void writeBlock(DataOutputStream out, StringTable stringTable, List<FileState> block) throws IOException {
+        int size = block.size();
+        int firstNewString = stringTable.size();
+
+        int[][] fileNames = new int[size][];
+        int[][] fileAttributes = new int[size][];
+        List<FileState> previousFileStates = new ArrayList<>();
+        for (int index = 0; index < size; index++) {
+            FileState fileState = block.get(index);
+            fileNames[index] = stringTable.idsOf(fileState.getFileName().split("/", -1));
+            fileAttributes[index] = attributeIds(stringTable, fileState.getFileAttributes());
+            if (fileState.getPreviousFileState() != null) {
+                previousFileStates.add(fileState.getPreviousFileState());
+            }
+        }
+
+        List<String> newStrings = stringTable.stringsFrom(firstNewString);
+        out.writeInt(newStrings.size());
+        for (String string : newStrings) {
+            writeString(out, string);
+        }
+
+        for (int[] segments : fileNames) {
+            writeIds(out, segments);
+        }
+        for (FileState fileState : block) {
+            out.writeLong(fileState.getFileLength());
+        }
+        for (FileState fileState : block) {
+            out.writeLong(fileState.getFileTime().getCreationTime());
+        }
+        for (FileState fileState : block) {
+            out.writeLong(fileState.getFileTime().getLastModified());
+        }
+        for (FileState fileState : block) {
+            Modification modification = fileState.getModification();
+            out.writeByte(modification != null ? modification.ordinal() + 1 : 0);
+        }
+        for (FileState fileState : block) {
+            writeHash(out, fileState.getFileHash().getSmallBlockHash());
+        }
+        for (FileState fileState : block) {
+            writeHash(out, fileState.getFileHash().getMediumBlockHash());
+        }
+        for (FileState fileState : block) {
+            writeHash(out, fileState.getFileHash().getFullHash());
+        }
+        for (int[] attributes : fileAttributes) {
+            writeIds(out, attributes);
+        }
+        for (FileState fileState : block) {
+            out.writeBoolean(fileState.getPreviousFileState() != null);
+        }
+
+        if (!previousFileStates.isEmpty()) {
+            writeBlock(out, stringTable, previousFileStates);
+        }
+    }
+
+    private static List<FileState> readBlock(DataInputStream in, List<String> stringTable, int size) throws IOException {
+        int newStringCount = in.readInt();
+        for (int index = 0; index < newStringCount; index++) {
+            stringTable.add(readString(in));
+        }
+
+        String[] fileNames = new String[size];
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < size; index++) {
+            builder.setLength(0);
+            int segmentCount = in.readInt();
+            for (int segment = 0; segment < segmentCount; segment++) {
+                if (segment > 0) {
+                    builder.append('/');
+                }
+                builder.append(stringTable.get(in.readInt()));
+            }
+            fileNames[index] = builder.toString();
+        }
+        long[] fileLengths = readLongs(in, size);
+        long[] creationTimes = readLongs(in, size);
+        long[] lastModifiedTimes = readLongs(in, size);
+        byte[] modifications = new byte[size];
+        in.readFully(modifications);
+        String[] smallBlockHashes = readHashes(in, size);
+        String[] mediumBlockHashes = readHashes(in, size);
+        String[] fullHashes = readHashes(in, size);
+
+        List<FileState> fileStates = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            FileState fileState = new FileState();
+            fileState.setFileName(fileNames[index]);
+            fileState.setFileLength(fileLengths[index]);
+            fileState.setFileTime(new FileTime(creationTimes[index], lastModifiedTimes[index]));
+            if (modifications[index] != 0) {
+                fileState.setModification(Modification.values()[modifications[index] - 1]);
+            }
+            fileState.setFileHash(new FileHash(smallBlockHashes[index], mediumBlockHashes[index], fullHashes[index]));
+            fileStates.add(fileState);
+        }
+
+        for (FileState fileState : fileStates) {
+            int attributeCount = in.readInt();
+            if (attributeCount >= 0) {
+                Map<String, String> attributes = new HashMap<>();
+                for (int index = 0; index < attributeCount; index += 2) {
+                    attributes.put(stringTable.get(in.readInt()), stringTable.get(in.readInt()));
+                }
+                fileState.setFileAttributes(attributes);
+            }
+        }
+
+        List<FileState> withPreviousFileState = new ArrayList<>();
+        for (FileState fileState : fileStates) {
+            if (in.readBoolean()) {
+                withPreviousFileState.add(fileState);
+            }
+        }
+
+        if (!withPreviousFileState.isEmpty()) {
+            List<FileState> previousFileStates = readBlock(in, stringTable, withPreviousFileState.size());
+            for (int index = 0; index < previousFileStates.size(); index++) {
+                withPreviousFileState.get(index).setPreviousFileState(previousFileStates.get(index));
+            }
+        }
+        return fileStates;
+    }
+
+    private static int[] attributeIds(StringTable stringTable, Map<String, String> attributes) {
+        if (attributes == null) {
+            return null;
+        }
+
+        int[] ids = new int[attributes.size() * 2];
+        int index = 0;
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            ids[index++] = stringTable.idOf(entry.getKey());
+            ids[index++] = stringTable.idOf(entry.getValue());
+        }
+        return ids;
+    }
+
+    /**
+     * Write the count of ids followed by the ids. A count of -1 means null.
+     */
+    private static void writeIds(DataOutputStream out, int[] ids) throws IOException {
+        if (ids == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    private static long[] readLongs(DataInputStream in, int size) throws IOException {
+        long[] values = new long[size];
+        for (int index = 0; index < size; index++) {
+            values[index] = in.readLong();
+        }
+        return values;
+    }
+
+    /**
+     * Write the raw bytes of the hash preceded by their length.
+     * A hash that cannot be converted back to the same Ascii85 string is written as a string.
+     */
+    private static void writeHash(DataOutputStream out, String hash) throws IOException {
+        if (NO_HASH.equals(hash)) {
+            out.writeByte(NO_HASH_LENGTH);
+            return;
+        }
+
+        byte[] rawHash = toRawHash(hash);
+        if (rawHash == null) {
+            out.writeByte(ENCODED_HASH_LENGTH);
+            writeString(out, hash);
+        } else {
+            out.writeByte(rawHash.length);
+            out.write(rawHash);
+        }
+    }
+
+    private static byte[] toRawHash(String hash) {
+        try {
+            byte[] rawHash = Ascii85Util.decode(hash);
+            if (rawHash.length > NO_HASH_LENGTH && rawHash.length < ENCODED_HASH_LENGTH && Ascii85Util.encode(rawHash).equals(hash)) {
+                return rawHash;
+            }
+        } catch (DecoderException | RuntimeException ex) {
+            // Not a valid Ascii85 string, so it will be written as is
+        }
+        return null;
+    }
+
+    private static String[] readHashes(DataInputStream in, int size) throws IOException {
+        String[] hashes = new String[size];
+        for (int index = 0; index < size; index++) {
+            int length = in.readUnsignedByte();
+            if (length == NO_HASH_LENGTH) {
+                hashes[index] = NO_HASH;
+            } else if (length == ENCODED_HASH_LENGTH) {
+                hashes[index] = readString(in);
+            } else {
+                byte[] rawHash = new byte[length];
+                in.readFully(rawHash);
+                hashes[index] = Ascii85Util.encode(rawHash);
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Write the length of the UTF-8 bytes followed by the bytes. A length of -1 means null.
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int size() {
+            return strings.size();
+        }
+
+        int idOf(String string) {
+            Integer id = ids.get(string);
+            if (id == null) {
+                id = strings.size();
+                ids.put(string, id);
+                strings.add(string);
+            }
+            return id;
+        }
+
+        int[] idsOf(String[] values) {
+            return Arrays.stream(values).mapToInt(this::idOf).toArray();
+        }
+
+        List<String> stringsFrom(int index) {
+            return strings.subList(index, strings.size());
+        }
+    }
+}
@@ -84,6 +84,29 @@ public class CompareResult {
         return differences;
     }
 
+    /**
+     * Add the FileState to the differences matching its modification. Unmodified FileStates are ignored.
+     */
+    public void addFileState(FileState fileState) {
+        Modification modification = fileState.getModification();
+        if (modification == null) {
+            return;
+        }
+
+        Difference difference = new Difference(fileState);
+        switch (modification) {
+            case added -> added.add(difference);
+            case copied -> copied.add(difference);
+            case duplicated -> duplicated.add(difference);
+            case dateModified -> dateModified.add(difference);
+            case contentModified -> contentModified.add(difference);
+            case attributesModified -> attributesModified.add(difference);
+            case renamed -> renamed.add(difference);
+            case deleted -> deleted.add(difference);
+            case corrupted -> corrupted.add(difference);
+        }
+    }
+
     public void sortResults() {
         sortDifferences(added);
         sortDifferences(copied);
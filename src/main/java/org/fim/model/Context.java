@@ -54,6 +54,19 @@ public class Context {
     private List<FilePattern> includePatterns;
     private List<FilePattern> excludePatterns;
     private OutputType outputType;
+    private boolean trustModificationTime;
+    private boolean paranoid;
+    private StateFormat stateFormat;
+    private boolean sortMergeComparison;
+    private HashAlgorithm hashAlgorithm;
+    private boolean hashAlgorithmSpecified;
+    private FileReadMode fileReadMode;
+    private int threadsPerDevice;
+    private boolean inodeOrder;
+    private long treeHashSegmentSize;
+    private boolean treeHashSegmentSizeSpecified;
+    private boolean useXattrCache;
+    private DeduplicationMode deduplicationMode;
 
     private DynamicScaling dynamicScaling;
 
@@ -77,6 +90,19 @@ public class Context {
         setSortAscending(false);
         setSortMethod(SortMethod.wasted);
         setOutputType(OutputType.human);
+        setTrustModificationTime(false);
+        setParanoid(false);
+        setStateFormat(null);
+        setSortMergeComparison(false);
+        setHashAlgorithm(HashAlgorithm.sha512);
+        setHashAlgorithmSpecified(false);
+        setFileReadMode(FileReadMode.auto);
+        setThreadsPerDevice(0);
+        setInodeOrder(false);
+        setTreeHashSegmentSize(0);
+        setTreeHashSegmentSizeSpecified(false);
+        setUseXattrCache(false);
+        setDeduplicationMode(DeduplicationMode.remove);
     }
 
     public void initializeDynamicScaling() {
@@ -283,6 +309,123 @@ public class Context {
         return outputType;
     }
 
+    public boolean isTrustModificationTime() {
+        return trustModificationTime;
+    }
+
+    public void setTrustModificationTime(boolean trustModificationTime) {
+        this.trustModificationTime = trustModificationTime;
+    }
+
+    public boolean isParanoid() {
+        return paranoid;
+    }
+
+    public void setParanoid(boolean paranoid) {
+        this.paranoid = paranoid;
+    }
+
+    /**
+     * @return the State format requested on the command line, or null to use the one of the repository
+     */
+    public StateFormat getStateFormat() {
+        return stateFormat;
+    }
+
+    public void setStateFormat(StateFormat stateFormat) {
+        this.stateFormat = stateFormat;
+    }
+
+    public boolean isSortMergeComparison() {
+        return sortMergeComparison;
+    }
+
+    public void setSortMergeComparison(boolean sortMergeComparison) {
+        this.sortMergeComparison = sortMergeComparison;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public void setHashAlgorithm(HashAlgorithm hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    public boolean isHashAlgorithmSpecified() {
+        return hashAlgorithmSpecified;
+    }
+
+    public void setHashAlgorithmSpecified(boolean hashAlgorithmSpecified) {
+        this.hashAlgorithmSpecified = hashAlgorithmSpecified;
+    }
+
+    public FileReadMode getFileReadMode() {
+        return fileReadMode;
+    }
+
+    public void setFileReadMode(FileReadMode fileReadMode) {
+        this.fileReadMode = fileReadMode;
+    }
+
+    /**
+     * @return the number of FileHashers of each device, or 0 when all the files share the same queue and FileHashers.
+     */
+    public int getThreadsPerDevice() {
+        return threadsPerDevice;
+    }
+
+    public void setThreadsPerDevice(int threadsPerDevice) {
+        this.threadsPerDevice = threadsPerDevice;
+    }
+
+    public boolean isHashPerDevice() {
+        return threadsPerDevice > 0;
+    }
+
+    public boolean isInodeOrder() {
+        return inodeOrder;
+    }
+
+    public void setInodeOrder(boolean inodeOrder) {
+        this.inodeOrder = inodeOrder;
+    }
+
+    /**
+     * @return the size of the segments of the tree hash, or 0 when the files are hashed sequentially.
+     */
+    public long getTreeHashSegmentSize() {
+        return treeHashSegmentSize;
+    }
+
+    public void setTreeHashSegmentSize(long treeHashSegmentSize) {
+        this.treeHashSegmentSize = treeHashSegmentSize;
+    }
+
+    public boolean isTreeHashSegmentSizeSpecified() {
+        return treeHashSegmentSizeSpecified;
+    }
+
+    public void setTreeHashSegmentSizeSpecified(boolean treeHashSegmentSizeSpecified) {
+        this.treeHashSegmentSizeSpecified = treeHashSegmentSizeSpecified;
+    }
+
+    public boolean isUseXattrCache() {
+        return useXattrCache;
+    }
+
+    public void setUseXattrCache(boolean useXattrCache) {
+        this.useXattrCache = useXattrCache;
+    }
+
+    public DeduplicationMode getDeduplicationMode() {
+        return deduplicationMode;
+    }
+
+    public void setDeduplicationMode(DeduplicationMode deduplicationMode) {
+        this.deduplicationMode = deduplicationMode;
+    }
+
     @Override
     public Context clone() {
         Context cloned = new Context();
@@ -324,6 +467,19 @@ public class Context {
         }
 
         cloned.outputType = this.outputType;
+        cloned.trustModificationTime = this.trustModificationTime;
+        cloned.paranoid = this.paranoid;
+        cloned.stateFormat = this.stateFormat;
+        cloned.sortMergeComparison = this.sortMergeComparison;
+        cloned.hashAlgorithm = this.hashAlgorithm;
+        cloned.hashAlgorithmSpecified = this.hashAlgorithmSpecified;
+        cloned.fileReadMode = this.fileReadMode;
+        cloned.threadsPerDevice = this.threadsPerDevice;
+        cloned.inodeOrder = this.inodeOrder;
+        cloned.treeHashSegmentSize = this.treeHashSegmentSize;
+        cloned.treeHashSegmentSizeSpecified = this.treeHashSegmentSizeSpecified;
+        cloned.useXattrCache = this.useXattrCache;
+        cloned.deduplicationMode = this.deduplicationMode;
         return cloned;
     }
 }
@@ -22,6 +22,7 @@ package org.fim.model;
 import org.fim.internal.DuplicateOutputGenerator;
 import org.fim.util.Logger;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -29,6 +30,8 @@ import java.util.Scanner;
 
 import static org.atteo.evo.inflector.English.plural;
 import static org.fim.util.FileUtil.byteCountToDisplaySize;
+import static org.fim.util.FileUtil.isLastLink;
+import static org.fim.util.FileUtil.linkFile;
 import static org.fim.util.FileUtil.removeFile;
 
 public class DuplicateResult {
@@ -37,6 +40,7 @@ public class DuplicateResult {
     private long duplicatedFilesCount;
     private long totalWastedSpace;
     private long filesRemoved;
+    private long spaceDeduplicated;
     private long spaceFreed;
 
     public DuplicateResult(Context context) {
@@ -45,6 +49,7 @@ public class DuplicateResult {
         this.duplicatedFilesCount = 0;
         this.totalWastedSpace = 0;
         this.filesRemoved = 0;
+        this.spaceDeduplicated = 0;
         this.spaceFreed = 0;
     }
 
@@ -96,9 +101,10 @@ public class DuplicateResult {
                 Logger.out.println("No duplicate file found");
             }
         } else {
-            Logger.out.printf("Removed %d files and freed %s%n", filesRemoved, byteCountToDisplaySize(spaceFreed));
+            String done = context.getDeduplicationMode() == DeduplicationMode.remove ? "Removed" : "Linked";
+            Logger.out.printf("%s %d files and freed %s%n", done, filesRemoved, byteCountToDisplaySize(spaceFreed));
             long remainingDuplicates = duplicatedFilesCount - filesRemoved;
-            long remainingWastedSpace = totalWastedSpace - spaceFreed;
+            long remainingWastedSpace = totalWastedSpace - spaceDeduplicated;
             if (remainingDuplicates > 0) {
                 Logger.out.printf("Still have %d duplicate %s, %s of total wasted space%n",
                         remainingDuplicates, pluralForLong("file", remainingDuplicates), byteCountToDisplaySize(remainingWastedSpace));
@@ -123,19 +129,42 @@ public class DuplicateResult {
             selectFilesToRemove(duplicatedFiles);
         }
 
+        Path preservedFile = duplicatedFiles.stream()
+                .filter(fileState -> !fileState.isToRemove())
+                .map(fileState -> context.getRepositoryRootDir().resolve(fileState.getFileName()))
+                .findFirst().orElse(null);
+
         String action;
         for (FileState fileState : duplicatedFiles) {
             action = "   ";
-            if (fileState.isToRemove() && removeFile(context, context.getRepositoryRootDir(), fileState)) {
-                action = "[-]";
-                filesRemoved++;
-                spaceFreed += fileState.getFileLength();
+            if (fileState.isToRemove()) {
+                // A file having other hard links keeps using its space
+                boolean lastLink = isLastLink(context.getRepositoryRootDir().resolve(fileState.getFileName()));
+                if (deduplicateFile(fileState, preservedFile)) {
+                    action = context.getDeduplicationMode() == DeduplicationMode.remove ? "[-]" : "[=]";
+                    filesRemoved++;
+                    spaceDeduplicated += fileState.getFileLength();
+                    if (lastLink) {
+                        spaceFreed += fileState.getFileLength();
+                    }
+                }
             }
             Logger.out.printf("  %s %s%n", action, fileState.getFileName());
         }
         Logger.newLine();
     }
 
+    private boolean deduplicateFile(FileState fileState, Path preservedFile) {
+        if (context.getDeduplicationMode() == DeduplicationMode.remove) {
+            return removeFile(context, context.getRepositoryRootDir(), fileState);
+        }
+        if (preservedFile == null) {
+            // No file of the set is preserved, so there is nothing to link to
+            return false;
+        }
+        return linkFile(context, context.getRepositoryRootDir(), fileState, preservedFile);
+    }
+
     protected void selectFilesToRemove(List<FileState> duplicatedFiles) {
         if (context.isAlwaysYes()) {
             for (FileState fileState : duplicatedFiles) {
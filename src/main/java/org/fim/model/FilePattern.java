@@ -112,6 +112,13 @@ public class FilePattern {
                 .toString();
     }
 
+    /**
+     * @return true if the file name matches one of the include patterns, if any, and none of the exclude patterns
+     */
+    public static boolean isSelected(String fileName, List<FilePattern> includePatterns, List<FilePattern> excludePatterns) {
+        return matchPatterns(fileName, includePatterns, true) && !matchPatterns(fileName, excludePatterns, false);
+    }
+
     public static boolean matchPatterns(String fileName, List<FilePattern> patterns, boolean defaultValue) {
         if (patterns != null) {
             for (FilePattern filePattern : patterns) {
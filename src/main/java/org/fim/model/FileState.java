@@ -22,10 +22,8 @@ package org.fim.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.Charsets;
 import com.google.common.base.MoreObjects;
-import com.google.common.hash.HashCode;
-import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
+import org.fim.util.XxHash64;
 
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Comparator;
@@ -190,15 +188,28 @@ public class FileState implements Hashable {
     }
 
     /**
-     * Returns a long hash code value for the object.
+     * Returns a long hash code value for the object, ignoring the milliseconds of the dates.
      * A long is used to avoid hashCode collisions when we have a huge number of FileStates.
+     * It is computed using xxHash64 without any allocation. It is not a cryptographic hash, so two different FileStates can still
+     * have the same longHashCode. Use equals() to check they are the same.
      */
     public long longHashCode() {
-        HashFunction hashFunction = Hashing.sha512();
-        Hasher hasher = hashFunction.newHasher(Constants.SIZE_4_KB);
-        hashObject(hasher, true);
-        HashCode hash = hasher.hash();
-        return hash.asLong();
+        long hash = XxHash64.hash(fileName, 0);
+        hash = XxHash64.hash(fileLength, hash);
+        hash = XxHash64.hash(fileTime.getCreationTime() / 1000, hash);
+        hash = XxHash64.hash(fileTime.getLastModified() / 1000, hash);
+        hash = XxHash64.hash(fileHash.getSmallBlockHash(), hash);
+        hash = XxHash64.hash(fileHash.getMediumBlockHash(), hash);
+        hash = XxHash64.hash(fileHash.getFullHash(), hash);
+
+        long attributesHash = 0;
+        if (fileAttributes != null) {
+            for (Map.Entry<String, String> entry : fileAttributes.entrySet()) {
+                // Sum the hash of each attribute, so that the result does not depend on the iteration order
+                attributesHash += XxHash64.hash(entry.getValue(), XxHash64.hash(entry.getKey(), 0));
+            }
+        }
+        return XxHash64.hash(attributesHash, hash);
     }
 
     @Override
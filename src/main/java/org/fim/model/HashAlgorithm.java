@@ -0,0 +1,50 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.fim.model;
+
+import org.fim.util.Blake3MessageDigest;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Algorithms that can be used to hash the content of the files. It is chosen during 'init' and cannot change afterward.
+ */
+public enum HashAlgorithm {
+    sha512("SHA-512"),
+    sha256("SHA-256"), // Use the SHA extensions of the CPU when the JVM supports them
+    blake3(Blake3MessageDigest.ALGORITHM);
+
+    private final String algorithmName;
+
+    HashAlgorithm(String algorithmName) {
+        this.algorithmName = algorithmName;
+    }
+
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
+    public MessageDigest createMessageDigest() throws NoSuchAlgorithmException {
+        if (this == blake3) {
+            return new Blake3MessageDigest();
+        }
+        return MessageDigest.getInstance(algorithmName);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.fim.util.JsonIO;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.fim.util.Ascii85Util.UTF8;
+
+/**
+ * Read a gzipped JSON State using the Jackson streaming API, without building the whole State in memory.
+ */
+public class JsonStateReader {
+    private static final JsonIO JSON_IO = new JsonIO();
+
+    private JsonStateReader() {
+        // Utility class, no instantiation
+    }
+
+    /**
+     * Read the header of the State and pass the FileStates one by one to the fileStateConsumer.
+     * The fields can come in any order. If fileStateConsumer is null, the reading stops when the FileStates are reached,
+     * as they are written after the header.
+     */
+    public static State read(Path stateFile, Consumer<FileState> fileStateConsumer) throws IOException, CorruptedStateException {
+        ObjectMapper objectMapper = JSON_IO.getObjectMapper();
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(stateFile.toFile())), UTF8);
+             JsonParser parser = objectMapper.getFactory().createParser(reader)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new CorruptedStateException();
+            }
+
+            State state = new State();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "stateHash" -> state.setStateHash(parser.getValueAsString());
+                    case "modelVersion" -> state.setModelVersion(parser.getValueAsString());
+                    case "timestamp" -> state.setTimestamp(parser.getLongValue());
+                    case "comment" -> state.setComment(parser.getValueAsString());
+                    case "fileCount" -> state.setFileCount(parser.getIntValue());
+                    case "filesContentLength" -> state.setFilesContentLength(parser.getLongValue());
+                    case "hashMode" -> state.setHashMode(HashMode.valueOf(parser.getValueAsString()));
+                    case "hashAlgorithm" -> state.setHashAlgorithm(HashAlgorithm.valueOf(parser.getValueAsString()));
+                    case "treeHashSegmentSize" -> state.setTreeHashSegmentSize(parser.getLongValue());
+                    case "commitDetails" -> state.setCommitDetails(objectMapper.readValue(parser, CommitDetails.class));
+                    case "modificationCounts" -> state.setModificationCounts(objectMapper.readValue(parser, ModificationCounts.class));
+                    case "ignoredFiles" -> state.setIgnoredFiles(objectMapper.readValue(parser, new TypeReference<HashSet<String>>() {
+                    }));
+                    case "fileStates" -> {
+                        if (fileStateConsumer == null) {
+                            return state;
+                        }
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            fileStateConsumer.accept(objectMapper.readValue(parser, FileState.class));
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            return state;
+        }
+    }
+}
@@ -37,6 +37,13 @@ public class LogEntry {
     private long filesContentLength;
 
     public LogEntry(Context context, State state, int stateNumber) {
+        this(state, stateNumber, new CompareResult(context, null, state));
+    }
+
+    /**
+     * @param compareResult the modifications of the State, when its FileStates have not been kept in memory
+     */
+    public LogEntry(State state, int stateNumber, CompareResult compareResult) {
         setStateNumber(stateNumber);
         setComment(state.getComment());
         setTimestamp(state.getTimestamp());
@@ -44,7 +51,7 @@ public class LogEntry {
         setFilesContentLength(state.getFilesContentLength());
         setModificationCounts(state.getModificationCounts());
         setCommitDetails(getStateCommitDetails(state));
-        setCompareResult(new CompareResult(context, null, state));
+        setCompareResult(compareResult);
     }
 
     public int getStateNumber() {
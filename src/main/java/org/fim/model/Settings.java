@@ -24,6 +24,12 @@ import static org.fim.model.HashMode.hashAll;
 public class Settings {
     private HashMode globalHashMode = hashAll;
     private int lastStateNumber = 0;
+    private boolean trustModificationTime = false;
+    private int fullRehashIntervalDays = 30;
+    private long lastFullRehashTimestamp = 0;
+    private StateFormat stateFormat = StateFormat.json;
+    private HashAlgorithm hashAlgorithm = HashAlgorithm.sha512;
+    private long treeHashSegmentSize = 0;
 
     public HashMode getGlobalHashMode() {
         return globalHashMode;
@@ -40,4 +46,52 @@ public class Settings {
     public void setLastStateNumber(int lastStateNumber) {
         this.lastStateNumber = lastStateNumber;
     }
+
+    public boolean isTrustModificationTime() {
+        return trustModificationTime;
+    }
+
+    public void setTrustModificationTime(boolean trustModificationTime) {
+        this.trustModificationTime = trustModificationTime;
+    }
+
+    public int getFullRehashIntervalDays() {
+        return fullRehashIntervalDays;
+    }
+
+    public void setFullRehashIntervalDays(int fullRehashIntervalDays) {
+        this.fullRehashIntervalDays = fullRehashIntervalDays;
+    }
+
+    public long getLastFullRehashTimestamp() {
+        return lastFullRehashTimestamp;
+    }
+
+    public void setLastFullRehashTimestamp(long lastFullRehashTimestamp) {
+        this.lastFullRehashTimestamp = lastFullRehashTimestamp;
+    }
+
+    public StateFormat getStateFormat() {
+        return stateFormat;
+    }
+
+    public void setStateFormat(StateFormat stateFormat) {
+        this.stateFormat = stateFormat;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public void setHashAlgorithm(HashAlgorithm hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    public long getTreeHashSegmentSize() {
+        return treeHashSegmentSize;
+    }
+
+    public void setTreeHashSegmentSize(long treeHashSegmentSize) {
+        this.treeHashSegmentSize = treeHashSegmentSize;
+    }
 }
@@ -44,6 +44,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -64,12 +65,16 @@ public class State implements Hashable {
     private int fileCount;
     private long filesContentLength;
     private HashMode hashMode;
+    private HashAlgorithm hashAlgorithm;
+    private long treeHashSegmentSize; // 0 when the full hash of the files is not a tree hash
     private CommitDetails commitDetails;
 
     private ModificationCounts modificationCounts; // Not taken in account in equals(), hashCode(), hashObject()
     private Set<String> ignoredFiles;
     private List<FileState> fileStates;
 
+    private transient boolean headerOnly; // FileStates not kept in memory, so fileCount and filesContentLength are the ones loaded
+
     public State() {
         modelVersion = CURRENT_MODEL_VERSION;
         timestamp = System.currentTimeMillis();
@@ -77,30 +82,65 @@ public class State implements Hashable {
         fileCount = 0;
         filesContentLength = 0;
         hashMode = hashAll;
+        hashAlgorithm = HashAlgorithm.sha512;
+        treeHashSegmentSize = 0;
         modificationCounts = new ModificationCounts();
         ignoredFiles = new HashSet<>();
         fileStates = new ArrayList<>();
         commitDetails = new CommitDetails(hashMode, null);
     }
 
+    /**
+     * Load a State file using the format given by its extension.
+     */
+    public static State loadFromFile(Path stateFile, boolean loadFullState) throws IOException, CorruptedStateException {
+        return switch (StateFormat.fromStateFile(stateFile)) {
+            case json -> loadFromGZipFile(stateFile, loadFullState);
+            case binary -> loadFromBinaryFile(stateFile, loadFullState);
+        };
+    }
+
+    /**
+     * Load only the header of a State file, in constant memory. Each FileState is passed to the fileStateConsumer, if not null,
+     * without being kept into the returned State. The integrity of the State cannot be checked.
+     */
+    public static State loadHeaderFromFile(Path stateFile, Consumer<FileState> fileStateConsumer) throws IOException, CorruptedStateException {
+        State state = switch (StateFormat.fromStateFile(stateFile)) {
+            case json -> JsonStateReader.read(stateFile, fileStateConsumer);
+            case binary -> BinaryStateIO.read(stateFile, fileStateConsumer);
+        };
+        state.headerOnly = true;
+        return state;
+    }
+
     public static State loadFromGZipFile(Path stateFile, boolean loadFullState) throws IOException, CorruptedStateException {
         try (Reader reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(stateFile.toFile())), UTF8)) {
             State state = JSON_IO.getObjectMapper().readValue(reader, State.class);
             System.gc(); // Force to clean up unused memory
 
-            if (state == null) {
-                throw new CorruptedStateException();
-            }
+            checkLoadedState(stateFile, state, loadFullState);
+            return state;
+        }
+    }
+
+    public static State loadFromBinaryFile(Path stateFile, boolean loadFullState) throws IOException, CorruptedStateException {
+        State state = BinaryStateIO.read(stateFile);
+        checkLoadedState(stateFile, state, loadFullState);
+        return state;
+    }
 
-            if (loadFullState) {
-                if (!CURRENT_MODEL_VERSION.equals(state.getModelVersion())) {
-                    Logger.warning(String.format("State %s use a different model version. Some features will not work completely.",
-                            stateFile.getFileName().toString()));
-                } else {
-                    checkIntegrity(state);
-                }
+    private static void checkLoadedState(Path stateFile, State state, boolean loadFullState) throws CorruptedStateException {
+        if (state == null) {
+            throw new CorruptedStateException();
+        }
+
+        if (loadFullState) {
+            if (!CURRENT_MODEL_VERSION.equals(state.getModelVersion())) {
+                Logger.warning(String.format("State %s use a different model version. Some features will not work completely.",
+                        stateFile.getFileName().toString()));
+            } else {
+                checkIntegrity(state);
             }
-            return state;
         }
     }
 
@@ -111,12 +151,18 @@ public class State implements Hashable {
         }
     }
 
-    public void saveToGZipFile(Path stateFile) throws IOException {
-        fileStates.sort(FILE_NAME_COMPARATOR);
+    /**
+     * Save the State using the format given by the extension of the file.
+     */
+    public void saveToFile(Path stateFile) throws IOException {
+        switch (StateFormat.fromStateFile(stateFile)) {
+            case json -> saveToGZipFile(stateFile);
+            case binary -> saveToBinaryFile(stateFile);
+        }
+    }
 
-        updateFileCount();
-        updateFilesContentLength();
-        stateHash = hashState();
+    public void saveToGZipFile(Path stateFile) throws IOException {
+        prepareToSave();
 
         try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(stateFile.toFile())), UTF8)) {
             JSON_IO.getObjectWriter().writeValue(writer, this);
@@ -124,6 +170,20 @@ public class State implements Hashable {
         System.gc(); // Force to clean up unused memory
     }
 
+    public void saveToBinaryFile(Path stateFile) throws IOException {
+        prepareToSave();
+
+        BinaryStateIO.write(this, stateFile);
+    }
+
+    private void prepareToSave() {
+        fileStates.sort(FILE_NAME_COMPARATOR);
+
+        updateFileCount();
+        updateFilesContentLength();
+        stateHash = hashState();
+    }
+
     public State filterDirectory(Path repositoryRootDir, Path currentDirectory, boolean keepFilesInside) {
         State filteredState = clone();
         filteredState.getFileStates().clear();
@@ -140,10 +200,16 @@ public class State implements Hashable {
     }
 
     public void updateFileCount() {
+        if (headerOnly) {
+            return;
+        }
         fileCount = fileStates.size();
     }
 
     public void updateFilesContentLength() {
+        if (headerOnly) {
+            return;
+        }
         filesContentLength = 0;
         for (FileState fileState : fileStates) {
             filesContentLength += fileState.getFileLength();
@@ -154,6 +220,10 @@ public class State implements Hashable {
         return modelVersion;
     }
 
+    void setModelVersion(String modelVersion) {
+        this.modelVersion = modelVersion;
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
@@ -176,11 +246,19 @@ public class State implements Hashable {
         return fileCount;
     }
 
+    void setFileCount(int fileCount) {
+        this.fileCount = fileCount;
+    }
+
     public long getFilesContentLength() {
         updateFilesContentLength();
         return filesContentLength;
     }
 
+    void setFilesContentLength(long filesContentLength) {
+        this.filesContentLength = filesContentLength;
+    }
+
     public HashMode getHashMode() {
         return hashMode;
     }
@@ -189,6 +267,30 @@ public class State implements Hashable {
         this.hashMode = hashMode;
     }
 
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public void setHashAlgorithm(HashAlgorithm hashAlgorithm) {
+        // States saved before the hash algorithm could be chosen
+        this.hashAlgorithm = hashAlgorithm != null ? hashAlgorithm : HashAlgorithm.sha512;
+    }
+
+    public long getTreeHashSegmentSize() {
+        return treeHashSegmentSize;
+    }
+
+    public void setTreeHashSegmentSize(long treeHashSegmentSize) {
+        this.treeHashSegmentSize = treeHashSegmentSize;
+    }
+
+    /**
+     * @return true if the file hashes of both States were computed the same way, so that they can be compared.
+     */
+    public boolean isHashedLike(State other) {
+        return hashAlgorithm == other.hashAlgorithm && treeHashSegmentSize == other.treeHashSegmentSize;
+    }
+
     public Set<String> getIgnoredFiles() {
         return ignoredFiles;
     }
@@ -253,13 +355,16 @@ public class State implements Hashable {
                && Objects.equals(this.fileCount, state.fileCount)
                && Objects.equals(this.filesContentLength, state.filesContentLength)
                && Objects.equals(this.hashMode, state.hashMode)
+               && Objects.equals(this.hashAlgorithm, state.hashAlgorithm)
+               && Objects.equals(this.treeHashSegmentSize, state.treeHashSegmentSize)
                && Objects.equals(this.ignoredFiles, state.ignoredFiles)
                && Objects.equals(this.fileStates, state.fileStates);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(modelVersion, timestamp, comment, fileCount, filesContentLength, hashMode, ignoredFiles, fileStates);
+        return Objects.hash(modelVersion, timestamp, comment, fileCount, filesContentLength, hashMode, hashAlgorithm, treeHashSegmentSize, ignoredFiles,
+                fileStates);
     }
 
     @Override
@@ -272,6 +377,8 @@ public class State implements Hashable {
                 .add("fileCount", fileCount)
                 .add("filesContentLength", filesContentLength)
                 .add("hashMode", hashMode)
+                .add("hashAlgorithm", hashAlgorithm)
+                .add("treeHashSegmentSize", treeHashSegmentSize)
                 .add("commitDetails", commitDetails)
                 .add("modificationCounts", modificationCounts)
                 .add("ignoredFiles", ignoredFiles)
@@ -296,6 +403,19 @@ public class State implements Hashable {
                 .putChar(HASH_FIELD_SEPARATOR)
                 .putString(hashMode.name(), Charsets.UTF_8);
 
+        if (hashAlgorithm != HashAlgorithm.sha512) {
+            // Keep the hash of the States created before the hash algorithm could be chosen
+            hasher
+                    .putChar(HASH_FIELD_SEPARATOR)
+                    .putString(hashAlgorithm.name(), Charsets.UTF_8);
+        }
+
+        if (treeHashSegmentSize != 0) {
+            hasher
+                    .putChar(HASH_FIELD_SEPARATOR)
+                    .putLong(treeHashSegmentSize);
+        }
+
         hasher.putChar(HASH_OBJECT_SEPARATOR);
         for (String ignoredFile : ignoredFiles) {
             hasher
@@ -320,6 +440,8 @@ public class State implements Hashable {
         cloned.fileCount = this.fileCount;
         cloned.filesContentLength = this.filesContentLength;
         cloned.hashMode = this.hashMode;
+        cloned.hashAlgorithm = this.hashAlgorithm;
+        cloned.treeHashSegmentSize = this.treeHashSegmentSize;
         cloned.commitDetails = this.commitDetails.clone();
         cloned.modificationCounts = this.modificationCounts.clone();
         cloned.ignoredFiles = new HashSet<>(this.ignoredFiles);
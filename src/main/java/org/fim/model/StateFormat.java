@@ -0,0 +1,50 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.model;
+
+import java.nio.file.Path;
+
+public enum StateFormat {
+    json(".json.gz"),
+    binary(".bin.gz");
+
+    private final String extension;
+
+    StateFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return the format of a State file according to its extension
+     */
+    public static StateFormat fromStateFile(Path stateFile) {
+        String fileName = stateFile.getFileName().toString();
+        for (StateFormat format : values()) {
+            if (fileName.endsWith(format.getExtension())) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown State file format '%s'", fileName));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.server;
+
+import org.fim.Fim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Thin client that sends the command line to the {@link FimServer} and streams back its output and exit status.
+ * When no server is listening, it runs the command itself.
+ * It uses only the JDK until it falls back to Fim, so that it starts quickly.
+ */
+public class FimClient {
+    public static final String SOCKET_ENV = "FIM_SERVER_SOCKET";
+
+    static final int OUTPUT = 'O';
+    static final int EXIT_STATUS = 'X';
+    static final int STDIN = 'I';
+    static final int STDIN_EOF = 'E';
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !"server".equals(args[0])) {
+            Integer exitStatus = run(getDefaultSocketFile(), Paths.get("").toAbsolutePath(), args, System.in, System.out);
+            if (exitStatus != null) {
+                System.exit(exitStatus);
+            }
+        }
+        Fim.main(args);
+    }
+
+    public static Path getDefaultSocketFile() {
+        String socketFile = System.getenv(SOCKET_ENV);
+        if (socketFile != null && !socketFile.isEmpty()) {
+            return Paths.get(socketFile);
+        }
+        return Paths.get(System.getProperty("user.home"), ".fim-server.sock");
+    }
+
+    public static boolean isServerRunning(Path socketFile) {
+        try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socketFile))) {
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Run the command through the server. The standard input is forwarded while the command runs.
+     *
+     * @return the exit status of the command, or null if no server is listening
+     */
+    public static Integer run(Path socketFile, Path currentDirectory, String[] args, InputStream stdin, OutputStream stdout) throws IOException {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socketFile));
+        } catch (IOException ex) {
+            return null;
+        }
+
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeUTF(currentDirectory.toString());
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            Thread stdinForwarder = new Thread(() -> forwardStandardInput(stdin, out), "fim-stdin");
+            stdinForwarder.setDaemon(true);
+            stdinForwarder.start();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            while (true) {
+                int type = in.read();
+                if (type == OUTPUT) {
+                    byte[] bytes = in.readNBytes(in.readInt());
+                    stdout.write(bytes);
+                    stdout.flush();
+                } else if (type == EXIT_STATUS) {
+                    return in.readInt();
+                } else {
+                    throw new IOException("Connection to the Fim server lost");
+                }
+            }
+        }
+    }
+
+    /**
+     * Send the standard input by chunks, then its end. The connection stays open, so that the server sees it closed only if the client is gone.
+     */
+    private static void forwardStandardInput(InputStream stdin, DataOutputStream out) {
+        try {
+            byte[] buffer = new byte[4_096];
+            int length;
+            while ((length = stdin.read(buffer)) >= 0) {
+                out.writeByte(STDIN);
+                out.writeInt(length);
+                out.write(buffer, 0, length);
+                out.flush();
+            }
+            out.writeByte(STDIN_EOF);
+            out.flush();
+        } catch (IOException ex) {
+            // The command is over
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.server;
+
+import org.fim.Fim;
+import org.fim.model.Context;
+import org.fim.util.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.fim.server.FimClient.EXIT_STATUS;
+import static org.fim.server.FimClient.OUTPUT;
+import static org.fim.server.FimClient.STDIN;
+import static org.fim.server.FimClient.STDIN_EOF;
+
+/**
+ * Keep a warm JVM that runs the commands sent by the {@link FimClient} through a Unix domain socket.
+ * The commands share the Logger and the standard input, so they are run one at a time, each on its own thread.
+ */
+public class FimServer implements Closeable {
+    private final Path socketFile;
+    private final ReentrantLock commandLock = new ReentrantLock();
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fim-server-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ServerSocketChannel serverChannel;
+    private boolean bound;
+    private int commandCount;
+
+    public FimServer(Path socketFile) {
+        this.socketFile = socketFile;
+    }
+
+    public Path getSocketFile() {
+        return socketFile;
+    }
+
+    public synchronized int getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * @return false if another server is already listening on the socket
+     */
+    public boolean start() throws IOException {
+        if (Files.exists(socketFile)) {
+            if (FimClient.isServerRunning(socketFile)) {
+                return false;
+            }
+            // Left by a server that was killed
+            Files.delete(socketFile);
+        }
+
+        serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        serverChannel.bind(UnixDomainSocketAddress.of(socketFile));
+        bound = true;
+        try {
+            Files.setPosixFilePermissions(socketFile, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ex) {
+            // Not a POSIX file system
+        }
+        return true;
+    }
+
+    /**
+     * Accept the clients until the server is closed.
+     */
+    public void serve() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                connectionExecutor.submit(() -> handle(channel));
+            } catch (ClosedChannelException ex) {
+                break;
+            } catch (IOException ex) {
+                Logger.error("Error accepting a client", ex, false);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            // The socket of another server must be kept
+            if (bound) {
+                Files.deleteIfExists(socketFile);
+            }
+        } catch (IOException ex) {
+            Logger.error("Error stopping the Fim server", ex, false);
+        }
+        connectionExecutor.shutdown();
+    }
+
+    /**
+     * Run the command on its own thread, while this one forwards the standard input sent by the client.
+     * When the connection is lost, the client was stopped, so the command is interrupted instead of blocking the next ones.
+     */
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            String currentDirectory = in.readUTF();
+            String[] args = new String[in.readInt()];
+            for (int index = 0; index < args.length; index++) {
+                args[index] = in.readUTF();
+            }
+
+            ResponseOutputStream out = new ResponseOutputStream(Channels.newOutputStream(channel));
+            ForwardedInputStream stdin = new ForwardedInputStream();
+            Thread commandThread = new Thread(() -> runCommandInTurn(currentDirectory, args, stdin, out), "fim-server-command");
+            commandThread.start();
+            try {
+                forwardStandardInput(in, stdin);
+            } finally {
+                // The client closes the connection once it got the exit status. Before, it means that it is gone
+                commandThread.interrupt();
+                stdin.end();
+                commandThread.join();
+            }
+        } catch (IOException ex) {
+            // The client is gone
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void forwardStandardInput(DataInputStream in, ForwardedInputStream stdin) {
+        try {
+            while (true) {
+                int type = in.read();
+                if (type == STDIN) {
+                    stdin.append(in.readNBytes(in.readInt()));
+                } else if (type == STDIN_EOF) {
+                    stdin.end();
+                } else {
+                    return;
+                }
+            }
+        } catch (IOException ex) {
+            // The connection is lost
+        }
+    }
+
+    private void runCommandInTurn(String currentDirectory, String[] args, InputStream in, ResponseOutputStream out) {
+        try {
+            commandLock.lockInterruptibly();
+        } catch (InterruptedException ex) {
+            // The client left while waiting for its turn
+            return;
+        }
+
+        int exitStatus;
+        try {
+            exitStatus = runCommand(currentDirectory, args, in, out);
+        } finally {
+            commandLock.unlock();
+        }
+        try {
+            out.writeExitStatus(exitStatus);
+        } catch (IOException ex) {
+            // The client is gone
+        }
+    }
+
+    private int runCommand(String currentDirectory, String[] args, InputStream in, OutputStream out) {
+        PrintStream initialOut = Logger.out;
+        int initialLevel = Logger.level;
+        InputStream initialIn = System.in;
+        String initialUserDir = System.getProperty("user.dir");
+
+        PrintStream printStream = new PrintStream(out, true);
+        Logger.out = printStream;
+        System.setIn(in);
+        // Where the global .fimignore is searched
+        System.setProperty("user.dir", currentDirectory);
+        try {
+            if (args.length > 0 && "server".equals(args[0])) {
+                Logger.error("Already running into the Fim server");
+                return -1;
+            }
+            if (args.length > 0 && "watch".equals(args[0])) {
+                // It never returns, so it would block all the next commands
+                Logger.error("The 'watch' command cannot run into the Fim server");
+                return -1;
+            }
+
+            Path clientDirectory = Paths.get(currentDirectory);
+            Context context = new Context();
+            context.setCurrentDirectory(clientDirectory);
+            return Fim.runCommand(args, context, clientDirectory);
+        } catch (Exception ex) {
+            // Like an uncaught exception stopping the JVM
+            ex.printStackTrace(printStream);
+            return 1;
+        } finally {
+            printStream.flush();
+            Logger.out = initialOut;
+            Logger.level = initialLevel;
+            System.setIn(initialIn);
+            System.setProperty("user.dir", initialUserDir);
+            synchronized (this) {
+                commandCount++;
+            }
+        }
+    }
+
+    /**
+     * Send the output of the command to the client by chunks.
+     */
+    private static class ResponseOutputStream extends OutputStream {
+        private final DataOutputStream out;
+
+        ResponseOutputStream(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > 0) {
+                out.writeByte(OUTPUT);
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        synchronized void writeExitStatus(int exitStatus) throws IOException {
+            out.writeByte(EXIT_STATUS);
+            out.writeInt(exitStatus);
+            out.flush();
+        }
+    }
+
+    /**
+     * The standard input of the command, fed with the chunks sent by the client. A read interrupted because the client is gone fails.
+     * The commands close the standard input they read, but it ends only with the one of the client.
+     */
+    private static class ForwardedInputStream extends InputStream {
+        private final Deque<byte[]> chunks = new ArrayDeque<>();
+        private byte[] currentChunk = new byte[0];
+        private int position;
+        private boolean ended;
+
+        synchronized void append(byte[] chunk) {
+            chunks.add(chunk);
+            notifyAll();
+        }
+
+        synchronized void end() {
+            ended = true;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            byte[] bytes = new byte[1];
+            return read(bytes, 0, 1) < 0 ? -1 : bytes[0] & 0xFF;
+        }
+
+        @Override
+        public synchronized int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (position == currentChunk.length) {
+                if (!chunks.isEmpty()) {
+                    currentChunk = chunks.poll();
+                    position = 0;
+                } else if (ended) {
+                    return -1;
+                } else {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("The client of the Fim server is gone");
+                    }
+                }
+            }
+            int count = Math.min(length, currentChunk.length - position);
+            System.arraycopy(currentChunk, position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public synchronized int available() {
+            return currentChunk.length - position;
+        }
+
+        @Override
+        public void close() {
+            // Closed with the connection
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.fim.util;
 
 import com.blackducksoftware.tools.commonframework.core.encoding.Ascii85Encoder;
+import org.apache.commons.codec.DecoderException;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -34,4 +35,8 @@ public class Ascii85Util {
     public static String encode(byte[] bytesToBeEncoded) {
         return new String(Ascii85Encoder.encode(bytesToBeEncoded), UTF8);
     }
+
+    public static byte[] decode(String encoded) throws DecoderException {
+        return Ascii85Encoder.decode(encoded.getBytes(UTF8));
+    }
 }
@@ -0,0 +1,333 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.fim.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * BLAKE3 hash function with a 256-bit output, in pure Java.
+ * Chunks are compressed one after the other, the chaining values of the tree being kept into a stack.
+ */
+public class Blake3MessageDigest extends MessageDigest {
+    public static final String ALGORITHM = "BLAKE3";
+
+    private static final int DIGEST_LENGTH = 32;
+    private static final int BLOCK_LEN = 64;
+    private static final int CHUNK_LEN = 1_024;
+    private static final int MAX_DEPTH = 54;
+
+    private static final int CHUNK_START = 1;
+    private static final int CHUNK_END = 1 << 1;
+    private static final int PARENT = 1 << 2;
+    private static final int ROOT = 1 << 3;
+
+    private static final int[] IV = {
+            0x6A09E667, 0xBB67AE85, 0x3C6EF372, 0xA54FF53A, 0x510E527F, 0x9B05688C, 0x1F83D9AB, 0x5BE0CD19
+    };
+
+    private static final VarHandle INT_LITTLE_ENDIAN = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final int[][] cvStack = new int[MAX_DEPTH][8];
+    private int cvStackLen;
+
+    // Current chunk
+    private final int[] chunkCv = new int[8];
+    private long chunkCounter;
+    private final byte[] block = new byte[BLOCK_LEN];
+    private int blockLen;
+    private int blocksCompressed;
+    private final int[] chunkOutputCv = new int[8];
+
+    public Blake3MessageDigest() {
+        super(ALGORITHM);
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        engineUpdate(new byte[]{input}, 0, 1);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        int position = offset;
+        int end = offset + len;
+        while (position < end) {
+            if (chunkLength() == CHUNK_LEN) {
+                // Finalize the current chunk only when more input arrives, as the last chunk is the root when it is alone
+                compress(chunkCv, block, 0, BLOCK_LEN, chunkCounter, chunkFlags() | CHUNK_END, chunkOutputCv);
+                addChunkChainingValue(chunkOutputCv, chunkCounter + 1);
+                startChunk(chunkCounter + 1);
+            }
+
+            if (blockLen == BLOCK_LEN) {
+                compress(chunkCv, block, 0, BLOCK_LEN, chunkCounter, chunkFlags(), chunkCv);
+                blocksCompressed++;
+                blockLen = 0;
+            }
+
+            // Compress directly from the input the blocks that are followed by more input inside the same chunk
+            while (blockLen == 0 && end - position > BLOCK_LEN && BLOCK_LEN * (blocksCompressed + 1) < CHUNK_LEN) {
+                compress(chunkCv, input, position, BLOCK_LEN, chunkCounter, chunkFlags(), chunkCv);
+                blocksCompressed++;
+                position += BLOCK_LEN;
+            }
+
+            int take = Math.min(BLOCK_LEN - blockLen, end - position);
+            System.arraycopy(input, position, block, blockLen, take);
+            blockLen += take;
+            position += take;
+        }
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        int[] inputCv = chunkCv.clone();
+        byte[] outputBlock = Arrays.copyOf(block, BLOCK_LEN);
+        Arrays.fill(outputBlock, blockLen, BLOCK_LEN, (byte) 0);
+        int outputBlockLen = blockLen;
+        long outputCounter = chunkCounter;
+        int outputFlags = chunkFlags() | CHUNK_END;
+
+        int[] cv = new int[8];
+        for (int index = cvStackLen - 1; index >= 0; index--) {
+            compress(inputCv, outputBlock, 0, outputBlockLen, outputCounter, outputFlags, cv);
+            outputBlock = parentBlock(cvStack[index], cv);
+            outputBlockLen = BLOCK_LEN;
+            outputCounter = 0;
+            outputFlags = PARENT;
+            inputCv = IV.clone();
+        }
+        // The counter of the root node is the one of the output block, always 0 for a 256-bit digest
+        compress(inputCv, outputBlock, 0, outputBlockLen, 0, outputFlags | ROOT, cv);
+
+        byte[] digest = new byte[DIGEST_LENGTH];
+        for (int index = 0; index < 8; index++) {
+            putWord(digest, index * 4, cv[index]);
+        }
+
+        engineReset();
+        return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+        cvStackLen = 0;
+        startChunk(0);
+    }
+
+    private void startChunk(long counter) {
+        System.arraycopy(IV, 0, chunkCv, 0, 8);
+        chunkCounter = counter;
+        blockLen = 0;
+        blocksCompressed = 0;
+    }
+
+    private int chunkLength() {
+        return BLOCK_LEN * blocksCompressed + blockLen;
+    }
+
+    private int chunkFlags() {
+        return blocksCompressed == 0 ? CHUNK_START : 0;
+    }
+
+    private void addChunkChainingValue(int[] cv, long totalChunks) {
+        long chunks = totalChunks;
+        while ((chunks & 1) == 0) {
+            cvStackLen--;
+            compress(IV, parentBlock(cvStack[cvStackLen], cv), 0, BLOCK_LEN, 0, PARENT, cv);
+            chunks >>= 1;
+        }
+        System.arraycopy(cv, 0, cvStack[cvStackLen], 0, 8);
+        cvStackLen++;
+    }
+
+    private static byte[] parentBlock(int[] leftCv, int[] rightCv) {
+        byte[] parentBlock = new byte[BLOCK_LEN];
+        for (int index = 0; index < 8; index++) {
+            putWord(parentBlock, index * 4, leftCv[index]);
+            putWord(parentBlock, 32 + index * 4, rightCv[index]);
+        }
+        return parentBlock;
+    }
+
+    private static void putWord(byte[] bytes, int offset, int word) {
+        INT_LITTLE_ENDIAN.set(bytes, offset, word);
+    }
+
+    /**
+     * Compress the block starting at offset and put the resulting chaining value into out.
+     */
+    private static void compress(int[] cv, byte[] bytes, int offset, int blockLen, long counter, int flags, int[] out) {
+        int m0 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 0);
+        int m1 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 4);
+        int m2 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 8);
+        int m3 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 12);
+        int m4 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 16);
+        int m5 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 20);
+        int m6 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 24);
+        int m7 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 28);
+        int m8 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 32);
+        int m9 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 36);
+        int m10 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 40);
+        int m11 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 44);
+        int m12 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 48);
+        int m13 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 52);
+        int m14 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 56);
+        int m15 = (int) INT_LITTLE_ENDIAN.get(bytes, offset + 60);
+
+        int v0 = cv[0];
+        int v1 = cv[1];
+        int v2 = cv[2];
+        int v3 = cv[3];
+        int v4 = cv[4];
+        int v5 = cv[5];
+        int v6 = cv[6];
+        int v7 = cv[7];
+        int v8 = IV[0];
+        int v9 = IV[1];
+        int v10 = IV[2];
+        int v11 = IV[3];
+        int v12 = (int) counter;
+        int v13 = (int) (counter >>> 32);
+        int v14 = blockLen;
+        int v15 = flags;
+
+        for (int round = 0; round < 7; round++) {
+            // Mix the columns
+            v0 += v4 + m0;
+            v12 = Integer.rotateRight(v12 ^ v0, 16);
+            v8 += v12;
+            v4 = Integer.rotateRight(v4 ^ v8, 12);
+            v0 += v4 + m1;
+            v12 = Integer.rotateRight(v12 ^ v0, 8);
+            v8 += v12;
+            v4 = Integer.rotateRight(v4 ^ v8, 7);
+            v1 += v5 + m2;
+            v13 = Integer.rotateRight(v13 ^ v1, 16);
+            v9 += v13;
+            v5 = Integer.rotateRight(v5 ^ v9, 12);
+            v1 += v5 + m3;
+            v13 = Integer.rotateRight(v13 ^ v1, 8);
+            v9 += v13;
+            v5 = Integer.rotateRight(v5 ^ v9, 7);
+            v2 += v6 + m4;
+            v14 = Integer.rotateRight(v14 ^ v2, 16);
+            v10 += v14;
+            v6 = Integer.rotateRight(v6 ^ v10, 12);
+            v2 += v6 + m5;
+            v14 = Integer.rotateRight(v14 ^ v2, 8);
+            v10 += v14;
+            v6 = Integer.rotateRight(v6 ^ v10, 7);
+            v3 += v7 + m6;
+            v15 = Integer.rotateRight(v15 ^ v3, 16);
+            v11 += v15;
+            v7 = Integer.rotateRight(v7 ^ v11, 12);
+            v3 += v7 + m7;
+            v15 = Integer.rotateRight(v15 ^ v3, 8);
+            v11 += v15;
+            v7 = Integer.rotateRight(v7 ^ v11, 7);
+            // Mix the diagonals
+            v0 += v5 + m8;
+            v15 = Integer.rotateRight(v15 ^ v0, 16);
+            v10 += v15;
+            v5 = Integer.rotateRight(v5 ^ v10, 12);
+            v0 += v5 + m9;
+            v15 = Integer.rotateRight(v15 ^ v0, 8);
+            v10 += v15;
+            v5 = Integer.rotateRight(v5 ^ v10, 7);
+            v1 += v6 + m10;
+            v12 = Integer.rotateRight(v12 ^ v1, 16);
+            v11 += v12;
+            v6 = Integer.rotateRight(v6 ^ v11, 12);
+            v1 += v6 + m11;
+            v12 = Integer.rotateRight(v12 ^ v1, 8);
+            v11 += v12;
+            v6 = Integer.rotateRight(v6 ^ v11, 7);
+            v2 += v7 + m12;
+            v13 = Integer.rotateRight(v13 ^ v2, 16);
+            v8 += v13;
+            v7 = Integer.rotateRight(v7 ^ v8, 12);
+            v2 += v7 + m13;
+            v13 = Integer.rotateRight(v13 ^ v2, 8);
+            v8 += v13;
+            v7 = Integer.rotateRight(v7 ^ v8, 7);
+            v3 += v4 + m14;
+            v14 = Integer.rotateRight(v14 ^ v3, 16);
+            v9 += v14;
+            v4 = Integer.rotateRight(v4 ^ v9, 12);
+            v3 += v4 + m15;
+            v14 = Integer.rotateRight(v14 ^ v3, 8);
+            v9 += v14;
+            v4 = Integer.rotateRight(v4 ^ v9, 7);
+
+            // Permute the message words for the next round
+            int t0 = m2;
+            int t1 = m6;
+            int t2 = m3;
+            int t3 = m10;
+            int t4 = m7;
+            int t5 = m0;
+            int t6 = m4;
+            int t7 = m13;
+            int t8 = m1;
+            int t9 = m11;
+            int t10 = m12;
+            int t11 = m5;
+            int t12 = m9;
+            int t13 = m14;
+            int t14 = m15;
+            int t15 = m8;
+            m0 = t0;
+            m1 = t1;
+            m2 = t2;
+            m3 = t3;
+            m4 = t4;
+            m5 = t5;
+            m6 = t6;
+            m7 = t7;
+            m8 = t8;
+            m9 = t9;
+            m10 = t10;
+            m11 = t11;
+            m12 = t12;
+            m13 = t13;
+            m14 = t14;
+            m15 = t15;
+        }
+
+        out[0] = v0 ^ v8;
+        out[1] = v1 ^ v9;
+        out[2] = v2 ^ v10;
+        out[3] = v3 ^ v11;
+        out[4] = v4 ^ v12;
+        out[5] = v5 ^ v13;
+        out[6] = v6 ^ v14;
+        out[7] = v7 ^ v15;
+    }
+}
@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.regex.Pattern;
 
 public class CommandUtil {
     private CommandUtil() {
@@ -78,4 +79,29 @@ public class CommandUtil {
             return lines;
         }
     }
+
+    /**
+     * Execute a command and return the tokens of the output split using the delimiter. The error output is discarded.
+     */
+    public static List<String> executeCommandAndGetTokens(List<String> cmdArray, String delimiter) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(cmdArray);
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = builder.start();
+
+        try (InputStream is = process.getInputStream();
+                Scanner scanner = new Scanner(is).useDelimiter(Pattern.quote(delimiter))) {
+            List<String> tokens = new ArrayList<>();
+            while (scanner.hasNext()) {
+                tokens.add(scanner.next());
+            }
+
+            process.waitFor();
+            int exitValue = process.exitValue();
+            if (exitValue != 0) {
+                throw new IllegalArgumentException(String.format("Command execution failed with status: %d", exitValue));
+            }
+
+            return tokens;
+        }
+    }
 }
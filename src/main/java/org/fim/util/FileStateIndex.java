@@ -0,0 +1,101 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.util;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.fim.model.FileState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of FileStates by their longHashCode().
+ * Two different FileStates can have the same longHashCode, so each lookup is confirmed with equals().
+ * FileStates that collide with an already indexed one are kept apart, as it is very rare.
+ */
+public class FileStateIndex {
+    private final Map<Long, FileState> fileStates;
+    private final ListMultimap<Long, FileState> collisions;
+
+    public FileStateIndex(Collection<FileState> fileStates) {
+        this.fileStates = new HashMap<>();
+        this.collisions = ArrayListMultimap.create();
+
+        for (FileState fileState : fileStates) {
+            add(fileState);
+        }
+    }
+
+    private void add(FileState fileState) {
+        long hashCode = fileState.longHashCode();
+        FileState existing = fileStates.putIfAbsent(hashCode, fileState);
+        if (existing == null) {
+            return;
+        }
+
+        // Check that no entry is duplicated
+        if (existing.equals(fileState) || collisions.get(hashCode).contains(fileState)) {
+            throw new IllegalStateException(String.format("Duplicated entries: '%s'", fileState.getFileName()));
+        }
+        collisions.put(hashCode, fileState);
+    }
+
+    /**
+     * Remove the indexed FileState that is equal to this one.
+     *
+     * @return the removed FileState or null if there is no equal FileState
+     */
+    public FileState remove(FileState fileState) {
+        long hashCode = fileState.longHashCode();
+        FileState candidate = fileStates.get(hashCode);
+        if (candidate == null) {
+            return null;
+        }
+
+        if (candidate.equals(fileState)) {
+            if (collisions.containsKey(hashCode)) {
+                fileStates.put(hashCode, collisions.get(hashCode).removeFirst());
+            } else {
+                fileStates.remove(hashCode);
+            }
+            return candidate;
+        }
+
+        if (!collisions.containsKey(hashCode)) {
+            return null;
+        }
+        List<FileState> collidingFileStates = collisions.get(hashCode);
+        int index = collidingFileStates.indexOf(fileState);
+        if (index < 0) {
+            return null;
+        }
+        return collidingFileStates.remove(index);
+    }
+
+    public List<FileState> values() {
+        List<FileState> values = new ArrayList<>(fileStates.values());
+        values.addAll(collisions.values());
+        return values;
+    }
+}
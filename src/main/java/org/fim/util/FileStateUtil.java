@@ -46,19 +46,6 @@ public class FileStateUtil {
         return fileNamesMap;
     }
 
-    public static Map<Long, FileState> buildHashCodeMap(Collection<FileState> fileStates) {
-        Map<Long, FileState> hashCodeMap = new HashMap<>();
-        for (FileState fileState : fileStates) {
-            hashCodeMap.put(fileState.longHashCode(), fileState);
-        }
-
-        // Check that no entry is duplicated
-        if (fileStates.size() != hashCodeMap.size()) {
-            throw new IllegalStateException(String.format("Duplicated entries: Size=%d, MapSize=%d", fileStates.size(), hashCodeMap.size()));
-        }
-        return hashCodeMap;
-    }
-
     public static ListMultimap<FileHash, FileState> buildFileHashList(Collection<FileState> fileStates) {
         ListMultimap<FileHash, FileState> fileHashMap = ArrayListMultimap.create();
         for (FileState fileState : fileStates) {
@@ -21,13 +21,25 @@ package org.fim.util;
 
 import org.apache.commons.lang3.SystemUtils;
 import org.fim.model.Context;
+import org.fim.model.DeduplicationMode;
 import org.fim.model.FileState;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.text.DecimalFormat;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 
 public class FileUtil {
     private FileUtil() {
@@ -36,6 +48,8 @@ public class FileUtil {
 
     private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("0.#");
     private static final Object DELETE_LOCK = new Object();
+    // The Unix file key is printed as '(dev=<hex>,ino=<decimal>)'
+    private static final Pattern INODE_PATTERN = Pattern.compile("ino=(\\d+)");
 
     public static String getNormalizedFileName(Path file) {
         String normalizedFileName = file.toAbsolutePath().normalize().toString();
@@ -57,6 +71,34 @@ public class FileUtil {
         return relativeFileName;
     }
 
+    /**
+     * Get the inode from the file key of the attributes, without reading the file attributes again.
+     *
+     * @return the inode, or -1 if the file system does not provide it.
+     */
+    public static long getInode(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        if (fileKey == null) {
+            return -1;
+        }
+        Matcher matcher = INODE_PATTERN.matcher(fileKey.toString());
+        if (!matcher.find()) {
+            return -1;
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * @return true if the file has no other hard link, so that removing or replacing it frees its space. Also true if the link count is unknown.
+     */
+    public static boolean isLastLink(Path file) {
+        try {
+            return ((Number) Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS)).intValue() <= 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException ex) {
+            return true;
+        }
+    }
+
     public static boolean removeFile(Context context, Path rootDir, FileState fileState) {
         // Files.delete() not ThreadSafe on Windows and macOS.
         // Based on https://github.com/apache/flink/blob/master/flink-core/src/main/java/org/apache/flink/util/FileUtils.java#L395
@@ -99,6 +141,116 @@ public class FileUtil {
         return false;
     }
 
+    /**
+     * Replace the duplicate with a hard link to the preserved file, or with a copy-on-write clone of it, depending on the deduplication mode.
+     * The link is created into a new temporary directory next to the duplicate and then renamed over it, so that the duplicate path always
+     * exists and no file of the user can be overwritten.
+     *
+     * @return true if the duplicate no longer uses its own space.
+     */
+    public static boolean linkFile(Context context, Path rootDir, FileState fileState, Path preservedFile) {
+        Path file = rootDir.resolve(fileState.getFileName());
+        Path tempDir = null;
+        try {
+            if (Files.isSameFile(file, preservedFile)) {
+                // Already a hard link to the preserved file
+                return false;
+            }
+
+            if (context.getDeduplicationMode() == DeduplicationMode.hardlink &&
+                !Files.getFileStore(file).equals(Files.getFileStore(preservedFile))) {
+                Logger.error(String.format("Cannot hard link '%s' to '%s' that is on another file system", fileState.getFileName(), preservedFile));
+                return false;
+            }
+
+            // A directory with a unique name, so that only paths created here are deleted
+            tempDir = Files.createTempDirectory(file.getParent(), ".fim-link");
+            Path tempFile = tempDir.resolve(file.getFileName());
+            if (context.getDeduplicationMode() == DeduplicationMode.hardlink) {
+                Files.createLink(tempFile, preservedFile);
+            } else {
+                if (!cloneFile(preservedFile, tempFile)) {
+                    Logger.warning(String.format("The file system does not support copy-on-write clones, keeping '%s'", fileState.getFileName()));
+                    return false;
+                }
+                // The clone is a distinct file, so it keeps the attributes of the duplicate
+                copyFileAttributes(context, file, tempFile);
+            }
+
+            Files.move(tempFile, file, ATOMIC_MOVE);
+            return true;
+        } catch (IOException ex) {
+            Logger.error("Error linking file", ex, context.isDisplayStackTrace());
+        } finally {
+            deleteTempDirectory(tempDir);
+        }
+        return false;
+    }
+
+    /**
+     * Apply the permissions, owner, group, SELinux label and modification date of the source to the target.
+     * The owner is applied first, as changing it can clear some permission bits.
+     */
+    public static void copyFileAttributes(Context context, Path source, Path target) throws IOException {
+        if (SystemUtils.IS_OS_WINDOWS) {
+            DosFileAttributes dosFileAttributes = Files.readAttributes(source, DosFileAttributes.class);
+            DosFilePermissions.setPermissions(context, target, DosFilePermissions.toString(dosFileAttributes));
+        } else {
+            PosixFileAttributes posixFileAttributes = Files.readAttributes(source, PosixFileAttributes.class);
+            PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+            targetView.setOwner(posixFileAttributes.owner());
+            targetView.setGroup(posixFileAttributes.group());
+            targetView.setPermissions(posixFileAttributes.permissions());
+        }
+
+        if (SELinux.ENABLED) {
+            String label = SELinux.getLabel(context, source);
+            if (label != null) {
+                SELinux.setLabel(context, target, label);
+            }
+        }
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+    }
+
+    private static void deleteTempDirectory(Path tempDir) {
+        if (tempDir == null) {
+            return;
+        }
+        try {
+            // Holds at most the link that could not be renamed
+            try (Stream<Path> files = Files.list(tempDir)) {
+                for (Path tempFile : files.toList()) {
+                    Files.delete(tempFile);
+                }
+            }
+            Files.delete(tempDir);
+        } catch (IOException ex) {
+            Logger.error(String.format("Error deleting the temporary directory '%s'", tempDir), ex, false);
+        }
+    }
+
+    private static boolean cloneFile(Path source, Path target) throws IOException {
+        List<String> cmdArray;
+        if (SystemUtils.IS_OS_LINUX) {
+            cmdArray = List.of("cp", "--reflink=always", source.toString(), target.toString());
+        } else if (SystemUtils.IS_OS_MAC_OSX) {
+            // Uses clonefile() on APFS
+            cmdArray = List.of("cp", "-c", source.toString(), target.toString());
+        } else {
+            return false;
+        }
+
+        try {
+            CommandUtil.executeCommand(cmdArray);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new FileOperationInterruptedException("File clone operation interrupted");
+        }
+    }
+
     /**
      * Call commons.io.FileUtils.byteCountToDisplaySize() with negative number support.
      */
@@ -19,17 +19,29 @@
 
 package org.fim.util;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import org.apache.commons.lang3.SystemUtils;
 import org.fim.model.Context;
 
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class SELinux {
     public static final boolean ENABLED = isEnabled();
 
+    // The labels of the directories being scanned. Entries expire quickly as labels can change
+    private static final LoadingCache<Path, Map<String, String>> DIRECTORY_LABELS = CacheBuilder.newBuilder()
+            .maximumSize(1_024)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .build(CacheLoader.from(SELinux::readDirectoryLabels));
+
     /**
      * Check whether SELinux is enabled or not.
      */
@@ -58,8 +70,23 @@ public class SELinux {
 
     /**
      * Retrieve the SELinux label of the specified file.
+     * The labels of all the files of its directory are retrieved at once, so that one process is spawned per directory instead of one per file.
      */
     public static String getLabel(Context context, Path file) {
+        Path normalizedFile = file.normalize().toAbsolutePath();
+        Path directory = normalizedFile.getParent();
+        if (directory != null && normalizedFile.getFileName() != null) {
+            String label = DIRECTORY_LABELS.getUnchecked(directory).get(normalizedFile.getFileName().toString());
+            if (label != null) {
+                return label;
+            }
+        }
+
+        // The file was not there when the directory was listed
+        return getFileLabel(context, normalizedFile);
+    }
+
+    static String getFileLabel(Context context, Path file) {
         String fileName = file.normalize().toAbsolutePath().toString();
         try {
             String line = CommandUtil.executeCommand(Arrays.asList("ls", "-1Z", fileName));
@@ -74,15 +101,51 @@ public class SELinux {
         return null;
     }
 
+    /**
+     * @return the SELinux label of each file of the directory, by file name. Empty if they cannot be retrieved
+     */
+    private static Map<String, String> readDirectoryLabels(Path directory) {
+        try {
+            // Each entry is terminated by a NUL character so that any file name can be parsed
+            List<String> entries = CommandUtil.executeCommandAndGetTokens(
+                    Arrays.asList("find", directory.toString(), "-mindepth", "1", "-maxdepth", "1", "-printf", "%Z\\t%f\\0"), "\0");
+            Map<String, String> labels = new HashMap<>();
+            for (String entry : entries) {
+                int tabIndex = entry.indexOf('\t');
+                if (tabIndex > 0) {
+                    // Intern labels to decrease memory usage, there are only a few different ones
+                    labels.put(entry.substring(tabIndex + 1), entry.substring(0, tabIndex).intern());
+                }
+            }
+            return labels;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyMap();
+        } catch (Exception ex) {
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Forget the labels read by a previous scan, so that a long running JVM like the Fim server never reports outdated labels.
+     */
+    public static void clearLabelCache() {
+        DIRECTORY_LABELS.invalidateAll();
+    }
+
     /**
      * Set the SELinux label of the specified file.
      */
     public static void setLabel(Context context, Path file, String label) {
-        String fileName = file.normalize().toAbsolutePath().toString();
+        Path normalizedFile = file.normalize().toAbsolutePath();
         try {
-            CommandUtil.executeCommand(Arrays.asList("chcon", label, fileName));
+            CommandUtil.executeCommand(Arrays.asList("chcon", label, normalizedFile.toString()));
         } catch (Exception ex) {
             Logger.error("Error setting SELinux label for '" + file + "'", ex, context.isDisplayStackTrace());
+        } finally {
+            if (normalizedFile.getParent() != null) {
+                DIRECTORY_LABELS.invalidate(normalizedFile.getParent());
+            }
         }
     }
 }
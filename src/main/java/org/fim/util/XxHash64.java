@@ -0,0 +1,163 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.util;
+
+/**
+ * xxHash64, a fast non-cryptographic 64-bit hash.
+ * Strings are hashed as their UTF-16LE bytes, read char by char, so that they are never converted to a byte array.
+ */
+public class XxHash64 {
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private XxHash64() {
+        // Utility class, no instantiation
+    }
+
+    public static long hash(byte[] bytes, long seed) {
+        return hash(new ByteInput(bytes), bytes.length, seed);
+    }
+
+    public static long hash(CharSequence chars, long seed) {
+        return hash(new CharInput(chars), chars.length() * 2, seed);
+    }
+
+    /**
+     * Hash the 8 bytes of a long, in little-endian order.
+     */
+    public static long hash(long value, long seed) {
+        long hash = seed + PRIME64_5 + 8;
+        hash ^= round(0, value);
+        hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+        return avalanche(hash);
+    }
+
+    private static long hash(Input input, int length, long seed) {
+        int offset = 0;
+        long hash;
+        if (length >= 32) {
+            long v1 = seed + PRIME64_1 + PRIME64_2;
+            long v2 = seed + PRIME64_2;
+            long v3 = seed;
+            long v4 = seed - PRIME64_1;
+            int limit = length - 32;
+            do {
+                v1 = round(v1, input.getLong(offset));
+                v2 = round(v2, input.getLong(offset + 8));
+                v3 = round(v3, input.getLong(offset + 16));
+                v4 = round(v4, input.getLong(offset + 24));
+                offset += 32;
+            } while (offset <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME64_5;
+        }
+
+        hash += length;
+
+        while (offset + 8 <= length) {
+            hash ^= round(0, input.getLong(offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+            offset += 8;
+        }
+
+        if (offset + 4 <= length) {
+            hash ^= input.getInt(offset) * PRIME64_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+            offset += 4;
+        }
+
+        while (offset < length) {
+            hash ^= input.getByte(offset) * PRIME64_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+            offset++;
+        }
+
+        return avalanche(hash);
+    }
+
+    private static long round(long accumulator, long input) {
+        long result = accumulator + input * PRIME64_2;
+        result = Long.rotateLeft(result, 31);
+        return result * PRIME64_1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        long result = accumulator ^ round(0, value);
+        return result * PRIME64_1 + PRIME64_4;
+    }
+
+    private static long avalanche(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private interface Input {
+        /**
+         * @return the unsigned byte at this offset
+         */
+        long getByte(int offset);
+
+        default long getInt(int offset) {
+            return getByte(offset) | getByte(offset + 1) << 8 | getByte(offset + 2) << 16 | getByte(offset + 3) << 24;
+        }
+
+        default long getLong(int offset) {
+            return getInt(offset) | getInt(offset + 4) << 32;
+        }
+    }
+
+    private record ByteInput(byte[] bytes) implements Input {
+        @Override
+        public long getByte(int offset) {
+            return bytes[offset] & 0xFFL;
+        }
+    }
+
+    private record CharInput(CharSequence chars) implements Input {
+        @Override
+        public long getByte(int offset) {
+            char character = chars.charAt(offset >> 1);
+            return (offset & 1) == 0 ? character & 0xFFL : (character >> 8) & 0xFFL;
+        }
+
+        @Override
+        public long getInt(int offset) {
+            if ((offset & 1) != 0) {
+                return Input.super.getInt(offset);
+            }
+            int index = offset >> 1;
+            return chars.charAt(index) | (long) chars.charAt(index + 1) << 16;
+        }
+    }
+}
@@ -66,6 +66,26 @@ public class FimWithReposTest {
         assertThat(context.getThreadCount()).isEqualTo(4);
     }
 
+    @Test
+    public void canCommitUsingThreadsPerDevice() throws Exception {
+        cut.run(new String[] { "ci", "-y", "--threads-per-device", "2" }, context);
+        assertThat(context.getThreadsPerDevice()).isEqualTo(2);
+        assertThat(context.isUseDynamicScaling()).isFalse();
+    }
+
+    @Test
+    public void badThreadsPerDeviceIsNotAllowed() throws Exception {
+        assertThrows(BadFimUsageException.class, () -> {
+            cut.run(new String[] { "status", "--threads-per-device", "0" }, context);
+        });
+    }
+
+    @Test
+    public void canCommitInInodeOrder() throws Exception {
+        cut.run(new String[] { "ci", "-y", "--inode-order", "-t", "1" }, context);
+        assertThat(context.isInodeOrder()).isTrue();
+    }
+
     @Test
     public void canCommitUsingFim() throws Exception {
         cut.run(new String[] { "ci", "-y" }, context);
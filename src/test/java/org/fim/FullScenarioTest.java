@@ -28,6 +28,7 @@ import org.fim.command.RemoveDuplicatesCommand;
 import org.fim.command.RollbackCommand;
 import org.fim.command.StatusCommand;
 import org.fim.command.exception.BadFimUsageException;
+import org.fim.internal.HashIndex;
 import org.fim.model.CompareResult;
 import org.fim.model.Context;
 import org.fim.model.CorruptedStateException;
@@ -158,6 +159,8 @@ public class FullScenarioTest {
         assertThat(ignoredFiles.size()).isEqualTo(6);
 
         assertCanRollbackLastCommit(context, 2, 3);
+        // The hash index refers to the removed State
+        assertThat(new HashIndex(context).getIndexFile()).doesNotExist();
 
         assertFilesModifiedCountEqualsTo(context, 13);
 
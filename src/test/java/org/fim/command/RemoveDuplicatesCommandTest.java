@@ -20,8 +20,10 @@
 package org.fim.command;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
 import org.fim.command.exception.BadFimUsageException;
 import org.fim.model.Context;
+import org.fim.model.DuplicateResult;
 import org.fim.model.State;
 import org.fim.tooling.RepositoryTool;
 import org.fim.tooling.TestConstants;
@@ -33,12 +35,17 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.stream.Stream;
 
 import static java.nio.file.StandardOpenOption.APPEND;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.fim.model.Command.FimReposConstraint.DONT_CARE;
+import static org.fim.model.DeduplicationMode.hardlink;
+import static org.fim.model.DeduplicationMode.reflink;
 import static org.fim.model.HashMode.hashSmallBlock;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
 public class RemoveDuplicatesCommandTest {
     private InitCommand initCommand;
@@ -97,6 +104,114 @@ public class RemoveDuplicatesCommandTest {
         assertThat(totalFilesRemoved).isEqualTo(4);
     }
 
+    @Test
+    public void canHardLinkDuplicatesToTheMasterFiles() throws Exception {
+        tool.createASetOfFiles(2);
+        initCommand.execute(context);
+
+        Files.copy(rootDir.resolve("file01"), rootDirCopy.resolve("dup_file01"));
+        Files.copy(rootDir.resolve("file02"), rootDirCopy.resolve("dup_file02"));
+        Files.write(rootDirCopy.resolve("dup_file02"), "appended content".getBytes(), APPEND);
+
+        context.setCurrentDirectory(rootDirCopy);
+        context.setMasterFimRepositoryDir(rootDir.toString());
+        context.setDeduplicationMode(hardlink);
+        long totalFilesLinked = (long) removeDuplicatesCommand.execute(context);
+        assertThat(totalFilesLinked).isEqualTo(1);
+
+        assertThat(Files.isSameFile(rootDirCopy.resolve("dup_file01"), rootDir.resolve("file01"))).isTrue();
+        assertThat(Files.isSameFile(rootDirCopy.resolve("dup_file02"), rootDir.resolve("file02"))).isFalse();
+        try (Stream<Path> files = Files.list(rootDirCopy)) {
+            assertThat(files.map(file -> file.getFileName().toString())).containsExactlyInAnyOrder("dup_file01", "dup_file02");
+        }
+    }
+
+    @Test
+    public void canHardLinkLocalDuplicates() throws Exception {
+        tool.createASetOfFiles(2);
+        Files.copy(rootDir.resolve("file01"), rootDir.resolve("dup_file01"));
+        initCommand.execute(context);
+
+        context.setCalledFromTest(true);
+        context.setDeduplicationMode(hardlink);
+        long totalFilesLinked = (long) removeDuplicatesCommand.execute(context);
+        assertThat(totalFilesLinked).isEqualTo(1);
+        assertThat(Files.isSameFile(rootDir.resolve("dup_file01"), rootDir.resolve("file01"))).isTrue();
+
+        // Files already linked together are left as is
+        totalFilesLinked = (long) removeDuplicatesCommand.execute(context);
+        assertThat(totalFilesLinked).isEqualTo(0);
+    }
+
+    @Test
+    public void onlyTheLastLinkOfAFileFreesItsSpace() throws Exception {
+        tool.createASetOfFiles(2);
+        Files.copy(rootDir.resolve("file01"), rootDir.resolve("file01_copy"));
+        Files.copy(rootDir.resolve("file02"), rootDir.resolve("file02_copy"));
+        // Another hard link, out of the repository, keeps using the space of file01_copy
+        Files.createLink(rootDirCopy.resolve("file01_link"), rootDir.resolve("file01_copy"));
+        initCommand.execute(context);
+
+        context.setCalledFromTest(true);
+        context.setRemoveDuplicates(true);
+        context.setDeduplicationMode(hardlink);
+        DuplicateResult result = (DuplicateResult) new FindDuplicatesCommand().execute(context);
+        assertThat(result.getFilesRemoved()).isEqualTo(2);
+        assertThat(Files.isSameFile(rootDir.resolve("file01_copy"), rootDir.resolve("file01"))).isTrue();
+        assertThat(result.getSpaceFreed()).isEqualTo(Files.size(rootDir.resolve("file02")));
+    }
+
+    @Test
+    public void linkingNeverTouchesTheOtherFiles() throws Exception {
+        tool.createASetOfFiles(1);
+        Files.copy(rootDir.resolve("file01"), rootDir.resolve("dup_file01"));
+        Files.writeString(rootDir.resolve(".dup_file01.fim-link"), "user content");
+        initCommand.execute(context);
+
+        context.setCalledFromTest(true);
+        context.setDeduplicationMode(hardlink);
+        long totalFilesLinked = (long) removeDuplicatesCommand.execute(context);
+        assertThat(totalFilesLinked).isEqualTo(1);
+
+        assertThat(rootDir.resolve(".dup_file01.fim-link")).hasContent("user content");
+        try (Stream<Path> files = Files.list(rootDir)) {
+            // No temporary directory is left
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .containsExactlyInAnyOrder(".fim", "file01", "dup_file01", ".dup_file01.fim-link");
+        }
+    }
+
+    @Test
+    public void duplicatesAreKeptWhenTheyCannotBeCloned() throws Exception {
+        tool.createASetOfFiles(1);
+        Files.copy(rootDir.resolve("file01"), rootDir.resolve("dup_file01"));
+        initCommand.execute(context);
+
+        context.setCalledFromTest(true);
+        context.setDeduplicationMode(reflink);
+        removeDuplicatesCommand.execute(context);
+
+        // Depending on the file system the duplicate is either cloned or kept, but it is never lost
+        assertThat(Files.readAllBytes(rootDir.resolve("dup_file01"))).isEqualTo(Files.readAllBytes(rootDir.resolve("file01")));
+        assertThat(Files.isSameFile(rootDir.resolve("dup_file01"), rootDir.resolve("file01"))).isFalse();
+    }
+
+    @Test
+    public void clonedDuplicatesKeepTheirPermissions() throws Exception {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        tool.createASetOfFiles(1);
+        Files.copy(rootDir.resolve("file01"), rootDir.resolve("dup_file01"));
+        Files.setPosixFilePermissions(rootDir.resolve("file01"), PosixFilePermissions.fromString("rw-r--r--"));
+        Files.setPosixFilePermissions(rootDir.resolve("dup_file01"), PosixFilePermissions.fromString("rw-------"));
+        initCommand.execute(context);
+
+        context.setCalledFromTest(true);
+        context.setDeduplicationMode(reflink);
+        removeDuplicatesCommand.execute(context);
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(rootDir.resolve("dup_file01")))).isEqualTo("rw-------");
+    }
+
     @Test
     public void masterDirectoryMustExist() throws Exception {
         context.setMasterFimRepositoryDir("dummy");
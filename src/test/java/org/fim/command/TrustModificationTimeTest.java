@@ -0,0 +1,114 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.fim.command;
+
+import org.fim.internal.SettingsManager;
+import org.fim.model.CompareResult;
+import org.fim.model.Context;
+import org.fim.tooling.RepositoryTool;
+import org.fim.util.TimeUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.fim.model.HashMode.hashAll;
+
+public class TrustModificationTimeTest {
+    private InitCommand initCommand;
+    private StatusCommand statusCommand;
+    private CommitCommand commitCommand;
+
+    private RepositoryTool tool;
+
+    @BeforeEach
+    public void setUp(TestInfo testInfo) throws IOException {
+        initCommand = new InitCommand();
+        statusCommand = new StatusCommand();
+        commitCommand = new CommitCommand();
+
+        tool = new RepositoryTool(testInfo);
+    }
+
+    @Test
+    public void unchangedDatesAreTrustedUnlessParanoid() throws Exception {
+        Context context = tool.createContext(hashAll, true);
+        context.setTrustModificationTime(true);
+
+        tool.createASetOfFiles(5);
+        initCommand.execute(context);
+
+        SettingsManager settingsManager = new SettingsManager(context);
+        assertThat(settingsManager.isTrustModificationTime()).isTrue();
+        assertThat(settingsManager.isFullRehashDue()).isFalse();
+
+        context.setTrustModificationTime(false);
+
+        TimeUtil.sleepSafely(1_000); // Ensure to increase lastModified at least of 1 second
+        tool.setFileContent("file02", "file02 new content");
+        modifyContentKeepingDates("file03");
+
+        CompareResult compareResult = (CompareResult) statusCommand.execute(context);
+        assertThat(compareResult.modifiedCount()).isEqualTo(1);
+        assertThat(compareResult.getContentModified().getFirst().getFileState().getFileName()).isEqualTo("file02");
+
+        context.setParanoid(true);
+        compareResult = (CompareResult) statusCommand.execute(context);
+        assertThat(compareResult.modifiedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void fullRehashIsDoneWhenScheduled() throws Exception {
+        Context context = tool.createContext(hashAll, true);
+        context.setTrustModificationTime(true);
+
+        tool.createASetOfFiles(5);
+        initCommand.execute(context);
+
+        modifyContentKeepingDates("file03");
+
+        SettingsManager settingsManager = new SettingsManager(context);
+        settingsManager.setLastFullRehashTimestamp(0);
+        settingsManager.save();
+        assertThat(settingsManager.isFullRehashDue()).isTrue();
+
+        CompareResult compareResult = (CompareResult) commitCommand.execute(context);
+        assertThat(compareResult.modifiedCount()).isEqualTo(1);
+
+        settingsManager = new SettingsManager(context);
+        assertThat(settingsManager.isFullRehashDue()).isFalse();
+    }
+
+    private void modifyContentKeepingDates(String fileName) throws IOException {
+        Path file = tool.getRootDir().resolve(fileName);
+        FileTime lastModified = Files.getLastModifiedTime(file);
+
+        // Rewrite the file in place to keep its creation time
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] = 0;
+        Files.write(file, bytes);
+
+        Files.setLastModifiedTime(file, lastModified);
+    }
+}
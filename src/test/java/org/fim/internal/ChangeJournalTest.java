@@ -0,0 +1,154 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.fim.model.Context;
+import org.fim.tooling.RepositoryTool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.fim.model.Constants.SIZE_1_MB;
+import static org.fim.model.HashMode.hashAll;
+
+public class ChangeJournalTest {
+    private ChangeJournal journal;
+    private FileChannel lockChannel;
+
+    @BeforeEach
+    public void setUp(TestInfo testInfo) throws IOException {
+        RepositoryTool tool = new RepositoryTool(testInfo);
+        Context context = tool.createContext(hashAll, true);
+        Files.createDirectories(context.getRepositoryDotFimDir());
+
+        journal = new ChangeJournal(context);
+        // Behave like a running watcher
+        lockChannel = FileChannel.open(journal.getLockFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        lockChannel.lock();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        lockChannel.close();
+    }
+
+    @Test
+    public void changedPathsAreTheOnesWrittenSinceTheBase() throws IOException {
+        journal.reset(List.of("file01", "dir/file02"), 3);
+        journal.writeChangedPaths(List.of("file03"));
+        assertThat(journal.getChangedPathsSince(3)).containsOnly("file01", "dir/file02", "file03");
+        assertThat(journal.getChangedPathsSince(2)).isNull();
+
+        ChangeJournal.Position position = journal.getPosition();
+        journal.writeChangedPaths(List.of("file04"));
+        journal.markBase(4, position);
+        journal.writeChangedPaths(List.of("file05"));
+        assertThat(journal.getChangedPathsSince(4)).containsOnly("file04", "file05");
+        assertThat(journal.getChangedPathsSince(3)).isNull();
+    }
+
+    @Test
+    public void journalIsNotUsableAfterAnOverflow() throws IOException {
+        journal.reset(List.of("file01"), 1);
+        journal.markOverflow();
+        assertThat(journal.getChangedPathsSince(1)).isNull();
+
+        // Until a commit scanned all the files
+        ChangeJournal.Position position = journal.getPosition();
+        journal.markBase(2, position);
+        assertThat(journal.getChangedPathsSince(2)).isEmpty();
+    }
+
+    @Test
+    public void largeJournalIsCompactedFromItsLastBase() throws IOException {
+        journal.reset(List.of("file01"), 1);
+        ChangeJournal.Position position = journal.getPosition();
+        journal.markBase(2, position);
+        journal.compactIfLarge();
+        assertThat(Files.size(journal.getJournalFile())).isGreaterThan(position.offset());
+
+        // The same files modified again and again
+        List<String> paths = IntStream.range(0, 1_000).mapToObj(index -> String.format("dir/%050d", index)).toList();
+        while (Files.size(journal.getJournalFile()) < 16 * SIZE_1_MB) {
+            journal.writeChangedPaths(paths);
+        }
+        journal.compactIfLarge();
+
+        assertThat(Files.size(journal.getJournalFile())).isLessThan(SIZE_1_MB);
+        assertThat(journal.getChangedPathsSince(2)).hasSize(1_000).containsAll(paths);
+        assertThat(journal.getChangedPathsSince(1)).isNull();
+    }
+
+    @Test
+    public void compactedJournalIsNotUsableAfterAnOverflow() throws IOException {
+        journal.reset(List.of("file01"), 1);
+        journal.markOverflow();
+        List<String> paths = IntStream.range(0, 1_000).mapToObj(index -> String.format("dir/%050d", index)).toList();
+        while (Files.size(journal.getJournalFile()) < 16 * SIZE_1_MB) {
+            journal.writeChangedPaths(paths);
+        }
+        journal.compactIfLarge();
+
+        assertThat(Files.size(journal.getJournalFile())).isLessThan(100L);
+        assertThat(journal.getChangedPathsSince(1)).isNull();
+    }
+
+    @Test
+    public void journalIsNotUsableOnceInvalidated() throws IOException {
+        journal.reset(List.of("file01"), 1);
+        journal.invalidate();
+        assertThat(journal.getChangedPathsSince(1)).isNull();
+    }
+
+    @Test
+    public void baseIsNotMarkedIntoAJournalReplacedDuringTheScan() throws IOException {
+        journal.reset(List.of("file01"), 1);
+        ChangeJournal.Position position = journal.getPosition();
+
+        // A new watcher started during the scan of the commit
+        journal.invalidate();
+        journal.reset(List.of("file02", "file03", "file04"), 1);
+        journal.markBase(2, position);
+        assertThat(journal.getChangedPathsSince(2)).isNull();
+        assertThat(journal.getChangedPathsSince(1)).containsOnly("file02", "file03", "file04");
+    }
+
+    @Test
+    public void journalIsNotUsableWithoutWatcher() throws IOException {
+        journal.reset(List.of("file01"), 1);
+        lockChannel.close();
+        assertThat(journal.getChangedPathsSince(1)).isNull();
+    }
+
+    @Test
+    public void pathsWithSpecialCharactersAreKept() throws IOException {
+        journal.reset(List.of("dir\\file 01", "file\n02"), 1);
+        assertThat(journal.getChangedPathsSince(1)).containsOnly("dir\\file 01", "file\n02");
+    }
+}
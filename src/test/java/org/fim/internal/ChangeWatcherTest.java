@@ -0,0 +1,144 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.fim.command.CommitCommand;
+import org.fim.command.InitCommand;
+import org.fim.command.StatusCommand;
+import org.fim.model.CompareResult;
+import org.fim.model.Context;
+import org.fim.tooling.RepositoryTool;
+import org.fim.util.TimeUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.fim.model.HashMode.hashAll;
+
+public class ChangeWatcherTest {
+    private RepositoryTool tool;
+    private Context context;
+    private ChangeWatcher watcher;
+
+    @BeforeEach
+    public void setUp(TestInfo testInfo) throws Exception {
+        tool = new RepositoryTool(testInfo);
+        context = tool.createContext(hashAll, true);
+
+        tool.createASetOfFiles(5);
+        new InitCommand().execute(context);
+        watcher = new ChangeWatcher(context);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        watcher.close();
+    }
+
+    @Test
+    public void statusScansOnlyTheJournaledPaths() throws Exception {
+        TimeUtil.sleepSafely(1_000); // Ensure to increase lastModified at least of 1 second
+        tool.setFileContent("file01", "file01 new content");
+        // Not seen by the watcher as the size and dates did not change
+        modifyContentKeepingDates("file04");
+
+        assertThat(watcher.start()).isTrue();
+        ChangeJournal journal = new ChangeJournal(context);
+        assertThat(journal.isWatcherRunning()).isTrue();
+
+        tool.setFileContent("file02", "file02 new content");
+        tool.createFile("file10");
+        Files.delete(tool.getRootDir().resolve("file03"));
+        Path subDir = Files.createDirectory(tool.getRootDir().resolve("sub"));
+        tool.createFile(subDir.resolve("file11"));
+        tool.createFile(subDir.resolve("file12"));
+
+        waitForJournaledPaths(journal, 1, "file01", "file02", "file03", "file10", "sub");
+
+        // Without trusting the modification times, all the files are scanned
+        CompareResult compareResult = (CompareResult) new StatusCommand().execute(context);
+        assertThat(compareResult.getContentModified()).hasSize(3);
+
+        context.setTrustModificationTime(true);
+        SettingsManager settingsManager = new SettingsManager(context);
+        settingsManager.setLastFullRehashTimestamp(System.currentTimeMillis());
+        settingsManager.save();
+        compareResult = (CompareResult) new StatusCommand().execute(context);
+        assertThat(compareResult.getContentModified()).hasSize(2);
+        assertThat(compareResult.getAdded()).hasSize(3);
+        assertThat(compareResult.getDeleted()).hasSize(1);
+
+        context.setComment("Using the journal");
+        compareResult = (CompareResult) new CommitCommand().execute(context);
+        assertThat(compareResult.modifiedCount()).isEqualTo(6);
+        assertThat(journal.getChangedPathsSince(2)).isEmpty();
+
+        // A full scan finds the file that was modified before the watcher started
+        context.setParanoid(true);
+        compareResult = (CompareResult) new StatusCommand().execute(context);
+        assertThat(compareResult.getContentModified()).hasSize(1);
+        assertThat(compareResult.getContentModified().getFirst().getFileState().getFileName()).isEqualTo("file04");
+
+        watcher.close();
+        assertThat(journal.isWatcherRunning()).isFalse();
+        assertThat(journal.getChangedPathsSince(2)).isNull();
+    }
+
+    @Test
+    public void onlyOneWatcherCanRun() throws Exception {
+        assertThat(watcher.start()).isTrue();
+
+        try (ChangeWatcher otherWatcher = new ChangeWatcher(context)) {
+            assertThat(otherWatcher.start()).isFalse();
+        }
+        assertThat(new ChangeJournal(context).isWatcherRunning()).isTrue();
+    }
+
+    private void waitForJournaledPaths(ChangeJournal journal, int stateNumber, String... paths) throws IOException {
+        Set<String> changedPaths = null;
+        for (int index = 0; index < 100; index++) {
+            changedPaths = journal.getChangedPathsSince(stateNumber);
+            if (changedPaths != null && changedPaths.containsAll(Set.of(paths))) {
+                break;
+            }
+            TimeUtil.sleepSafely(100);
+        }
+        assertThat(changedPaths).contains(paths);
+    }
+
+    private void modifyContentKeepingDates(String fileName) throws IOException {
+        Path file = tool.getRootDir().resolve(fileName);
+        FileTime lastModified = Files.getLastModifiedTime(file);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] = 0;
+        Files.write(file, bytes);
+
+        Files.setLastModifiedTime(file, lastModified);
+    }
+}
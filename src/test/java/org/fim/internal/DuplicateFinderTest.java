@@ -107,6 +107,19 @@ public class DuplicateFinderTest extends DuplicateAssert {
         assertThat(result.getDuplicateSets().size()).isEqualTo(0);
     }
 
+    @Test
+    public void filesThatNoLongerExistAreNotDuplicated() throws IOException {
+        s = s.copy("file_01", "file_10");
+        s = s.copy("file_01", "file_11");
+        s = s.copy("file_03", "file_12");
+        Files.copy(rootDir.resolve("file_01"), rootDir.resolve("file_10"));
+        // file_11 and file_12 are in the State but were deleted since
+
+        DuplicateResult result = cut.findDuplicates(s);
+        assertFilesDuplicated(result, duplicatedFiles("file_01", "file_10"));
+        assertThat(result.getTotalWastedSpace()).isEqualTo("file_10".length());
+    }
+
     @Test
     public void emptyFilesAreNeverSeenAsDuplicates() throws IOException {
         s = s.addEmptyFiles("empty_file_01", "empty_file_02", "empty_file_03", "empty_file_04");
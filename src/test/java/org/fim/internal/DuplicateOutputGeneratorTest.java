@@ -0,0 +1,115 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.fim.model.Context;
+import org.fim.model.DuplicateResult;
+import org.fim.model.FileHash;
+import org.fim.model.FileState;
+import org.fim.model.FileTime;
+import org.fim.model.OutputType;
+import org.fim.util.JsonIO;
+import org.fim.util.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DuplicateOutputGeneratorTest {
+    private PrintStream initialOut;
+    private ByteArrayOutputStream output;
+    private Context context;
+    private DuplicateResult result;
+
+    @BeforeEach
+    public void setUp() {
+        initialOut = Logger.out;
+        output = new ByteArrayOutputStream();
+        Logger.out = new PrintStream(output, true);
+
+        context = new Context();
+        result = new DuplicateResult(context);
+        result.addDuplicatedFiles(duplicatedFiles(10, "dir/photo.JPG", "photo_copy.jpg"));
+        result.addDuplicatedFiles(duplicatedFiles(5, "a,b \"c\"", "d/e/f", "g"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Logger.out = initialOut;
+    }
+
+    @Test
+    public void duplicatesCanBeOutputInJson() throws Exception {
+        context.setOutputType(OutputType.json);
+        new DuplicateOutputGenerator(context).generate(result);
+
+        JsonNode duplicates = new JsonIO().getObjectMapper().readTree(output.toString());
+        assertThat(duplicates.size()).isEqualTo(2);
+        assertThat(duplicates.get(0).get("wastedSpace").asLong()).isEqualTo(10);
+        JsonNode file = duplicates.get(0).get("fileList").get(0);
+        assertThat(file.get("path").asText()).isEqualTo("dir");
+        assertThat(file.get("name").asText()).isEqualTo("dir/photo.JPG");
+        assertThat(file.get("length").asLong()).isEqualTo(10);
+        assertThat(file.get("type").asText()).isEqualTo("jpg");
+        assertThat(duplicates.get(1).get("fileList").get(0).get("name").asText()).isEqualTo("a,b \"c\"");
+        assertThat(duplicates.get(1).get("fileList").size()).isEqualTo(3);
+
+        assertLoggerOutIsStillOpen();
+    }
+
+    @Test
+    public void duplicatesCanBeOutputInCsv() {
+        context.setOutputType(OutputType.csv);
+        new DuplicateOutputGenerator(context).generate(result);
+
+        assertThat(output.toString().split("\r\n")).containsExactly(
+                "SetIndex,FileIndex,WastedSpace,FilePath,FileName,FileLength,FileType",
+                "1,1,10,dir,dir/photo.JPG,10,jpg",
+                "1,2,10,,photo_copy.jpg,10,jpg",
+                "2,1,10,,\"a,b \"\"c\"\"\",5,",
+                "2,2,10,d/e,d/e/f,5,",
+                "2,3,10,,g,5,");
+
+        assertLoggerOutIsStillOpen();
+    }
+
+    private void assertLoggerOutIsStillOpen() {
+        output.reset();
+        Logger.out.print("still open");
+        assertThat(Logger.out.checkError()).isFalse();
+        assertThat(output.toString()).isEqualTo("still open");
+    }
+
+    private List<FileState> duplicatedFiles(long fileLength, String... fileNames) {
+        FileHash fileHash = new FileHash("small_" + fileLength, "medium_" + fileLength, "full_" + fileLength);
+        List<FileState> fileStates = new ArrayList<>();
+        for (String fileName : fileNames) {
+            fileStates.add(new FileState(fileName, fileLength, new FileTime(1, 1), new FileHash(fileHash), null));
+        }
+        return fileStates;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.fim.model.Context;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToDoubleFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DynamicScalingTest {
+    private static final int MEASUREMENT_COUNT = 200;
+
+    private Context context;
+    private AtomicInteger startedWorkers;
+    private AtomicInteger retiredWorkers;
+
+    @BeforeEach
+    public void setUp() {
+        context = new Context();
+        context.setUseDynamicScaling(true);
+        startedWorkers = new AtomicInteger(0);
+        retiredWorkers = new AtomicInteger(0);
+    }
+
+    @Test
+    public void scaleUpUntilTheThroughputIsSaturated() {
+        DynamicScaling cut = createDynamicScaling();
+        int maxThreads = cut.getMaxThreads();
+        int saturation = maxThreads - 1;
+
+        simulate(cut, threads -> Math.min(threads, saturation) * 100_000_000.0);
+
+        assertThat(cut.getPeakThreadCount()).isEqualTo(maxThreads);
+        assertThat(cut.getCurrentThreadCount()).isBetween(saturation - 1, maxThreads);
+        assertThat(cut.getScaleDownCount()).isGreaterThan(0);
+        assertThat(context.getThreadCount()).isEqualTo(cut.getCurrentThreadCount());
+        assertThat(startedWorkers.get() - retiredWorkers.get()).isEqualTo(cut.getCurrentThreadCount() - 1);
+    }
+
+    @Test
+    public void scaleDownWhenThreadsAreSeeking() {
+        context.setThreadCount(createDynamicScaling().getMaxThreads());
+        DynamicScaling cut = createDynamicScaling();
+
+        // Like on a hard disk, more than two threads lose throughput in seeks
+        simulate(cut, threads -> threads <= 2 ? threads * 50_000_000.0 : 100_000_000.0 - (threads - 2) * 10_000_000.0);
+
+        assertThat(cut.getCurrentThreadCount()).isBetween(1, 3);
+        assertThat(cut.getScaleDownCount()).isGreaterThan(0);
+        assertThat(retiredWorkers.get()).isGreaterThan(0);
+    }
+
+    @Test
+    public void noWorkerIsRetiredWithoutScalingDown() {
+        DynamicScaling cut = createDynamicScaling();
+
+        assertThat(cut.shouldRetire()).isFalse();
+        assertThat(cut.getCurrentThreadCount()).isEqualTo(1);
+        assertThat(context.getThreadCount()).isEqualTo(1);
+    }
+
+    private DynamicScaling createDynamicScaling() {
+        DynamicScaling dynamicScaling = new DynamicScaling(context);
+        dynamicScaling.setWorkerStarter(startedWorkers::incrementAndGet);
+        return dynamicScaling;
+    }
+
+    private void simulate(DynamicScaling cut, IntToDoubleFunction throughputByThreads) {
+        for (int index = 0; index < MEASUREMENT_COUNT; index++) {
+            cut.adjustThreadCount(throughputByThreads.applyAsDouble(cut.getCurrentThreadCount()));
+            while (cut.shouldRetire()) {
+                retiredWorkers.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.fim.model.Context;
+import org.fim.model.FileState;
+import org.fim.model.Modification;
+import org.fim.tooling.BuildableState;
+import org.fim.tooling.RepositoryTool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.fim.model.HashAlgorithm.sha256;
+import static org.fim.model.HashMode.hashAll;
+
+public class HashIndexTest {
+    private Context context;
+    private BuildableState s;
+
+    @BeforeEach
+    public void setUp(TestInfo testInfo) throws IOException {
+        RepositoryTool tool = new RepositoryTool(testInfo);
+        context = tool.getContext();
+        Files.createDirectories(context.getRepositoryStatesDir());
+
+        s = new BuildableState(context).addFiles("file_01", "file_02", "dir/file_03", "file_04");
+    }
+
+    @Test
+    public void filesCanBeFoundByHash() throws IOException {
+        s.setHashAlgorithm(sha256);
+        s.setTreeHashSegmentSize(64);
+        new HashIndex(context).update(3, s);
+
+        try (HashIndex hashIndex = new HashIndex(context)) {
+            assertThat(hashIndex.open()).isTrue();
+            assertThat(hashIndex.getStateNumber()).isEqualTo(3);
+            assertThat(hashIndex.getHashMode()).isEqualTo(hashAll);
+            assertThat(hashIndex.getHashAlgorithm()).isEqualTo(sha256);
+            assertThat(hashIndex.getTreeHashSegmentSize()).isEqualTo(64);
+            assertThat(hashIndex.getEntryCount()).isEqualTo(4);
+
+            for (FileState fileState : s.getFileStates()) {
+                assertThat(hashIndex.findFileName(fileState)).isEqualTo(fileState.getFileName());
+            }
+
+            BuildableState other = s.addFiles("file_05").setContent("file_01", "other content");
+            assertThat(hashIndex.findFileName(findFileState(other, "file_05"))).isNull();
+            assertThat(hashIndex.findFileName(findFileState(other, "file_01"))).isNull();
+        }
+    }
+
+    @Test
+    public void emptyAndDeletedFilesAreNotIndexed() throws IOException {
+        s = s.addEmptyFiles("empty_file_01");
+        findFileState(s, "file_04").setModification(Modification.deleted);
+        new HashIndex(context).update(1, s);
+
+        try (HashIndex hashIndex = new HashIndex(context)) {
+            assertThat(hashIndex.open()).isTrue();
+            assertThat(hashIndex.getEntryCount()).isEqualTo(3);
+            assertThat(hashIndex.findFileName(findFileState(s, "file_04"))).isNull();
+            assertThat(hashIndex.findFileName(findFileState(s, "empty_file_01"))).isNull();
+        }
+    }
+
+    @Test
+    public void filesWithTheSameHashButADifferentLengthAreNotFound() throws IOException {
+        new HashIndex(context).update(1, s);
+        s = s.forceDifferentFileLength("file_02", 15);
+
+        try (HashIndex hashIndex = new HashIndex(context)) {
+            assertThat(hashIndex.open()).isTrue();
+            assertThat(hashIndex.findFileName(findFileState(s, "file_02"))).isNull();
+        }
+    }
+
+    @Test
+    public void thereIsNoIndexUntilAStateIsCreated() throws IOException {
+        try (HashIndex hashIndex = new HashIndex(context)) {
+            assertThat(hashIndex.open()).isFalse();
+        }
+
+        new StateManager(context).createNewState(s);
+        try (HashIndex hashIndex = new HashIndex(context)) {
+            assertThat(hashIndex.open()).isTrue();
+            assertThat(hashIndex.getStateNumber()).isEqualTo(1);
+        }
+    }
+
+    private FileState findFileState(BuildableState state, String fileName) {
+        return state.getFileStates().stream().filter(fileState -> fileState.getFileName().equals(fileName)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.fim.internal.hash.FileToHash;
+import org.fim.tooling.RepositoryTool;
+import org.fim.util.FileUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+public class InodeSortedBatchTest {
+    private static final int FILE_COUNT = 20;
+
+    private RepositoryTool tool;
+    private List<FileToHash> sentFiles;
+
+    @BeforeEach
+    public void setUp(TestInfo testInfo) throws IOException {
+        tool = new RepositoryTool(testInfo);
+        sentFiles = new ArrayList<>();
+    }
+
+    @Test
+    public void filesAreSentSortedByInode() throws IOException {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+
+        InodeSortedBatch cut = new InodeSortedBatch(FILE_COUNT, sentFiles::add);
+        for (FileToHash fileToHash : createShuffledFiles()) {
+            cut.add(fileToHash);
+        }
+
+        assertThat(sentFiles).hasSize(FILE_COUNT);
+        assertThat(inodesOf(sentFiles)).isSorted();
+    }
+
+    @Test
+    public void filesAreKeptUntilTheBatchIsFlushed() throws IOException {
+        InodeSortedBatch cut = new InodeSortedBatch(FILE_COUNT + 1, sentFiles::add);
+        for (FileToHash fileToHash : createShuffledFiles()) {
+            cut.add(fileToHash);
+        }
+        assertThat(sentFiles).isEmpty();
+
+        cut.flush();
+        assertThat(sentFiles).hasSize(FILE_COUNT);
+
+        cut.flush();
+        assertThat(sentFiles).hasSize(FILE_COUNT);
+    }
+
+    private List<FileToHash> createShuffledFiles() throws IOException {
+        List<FileToHash> files = new ArrayList<>();
+        for (int index = 0; index < FILE_COUNT; index++) {
+            Path file = tool.getRootDir().resolve("file" + index);
+            tool.createFile(file);
+            files.add(new FileToHash(file, Files.readAttributes(file, BasicFileAttributes.class)));
+        }
+        Collections.shuffle(files, new Random(42));
+        return files;
+    }
+
+    private List<Long> inodesOf(List<FileToHash> files) {
+        List<Long> inodes = new ArrayList<>();
+        for (FileToHash fileToHash : files) {
+            inodes.add(FileUtil.getInode(fileToHash.attributes()));
+        }
+        return inodes;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal;
+
+import org.fim.model.Context;
+import org.fim.model.DuplicateResult;
+import org.fim.model.State;
+import org.fim.tooling.DuplicateAssert;
+import org.fim.tooling.RepositoryTool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProgressiveDuplicateFinderTest extends DuplicateAssert {
+    private static final int FILE_SIZE = 2 * 1_024 * 1_024;
+
+    private RepositoryTool tool;
+    private Path rootDir;
+    private Context context;
+    private ProgressiveDuplicateFinder cut;
+
+    @BeforeEach
+    public void setUp(TestInfo testInfo) throws IOException {
+        tool = new RepositoryTool(testInfo);
+        rootDir = tool.getRootDir();
+        context = tool.getContext();
+
+        cut = new ProgressiveDuplicateFinder(context);
+
+        tool.createFile(rootDir.resolve("file_01"), FILE_SIZE);
+        tool.createFile(rootDir.resolve("file_02"), FILE_SIZE);
+        tool.createFile(rootDir.resolve("file_03"));
+        tool.createFile(rootDir.resolve("file_04"));
+    }
+
+    @Test
+    public void filesWithTheSameSizeAreNotAlwaysDuplicated() throws NoSuchAlgorithmException {
+        DuplicateResult result = cut.findDuplicates(rootDir);
+        assertFilesDuplicated(result);
+        assertThat(result.getTotalWastedSpace()).isEqualTo(0);
+    }
+
+    @Test
+    public void filesDifferingOnlyAfterTheMediumBlockAreNotDuplicated() throws Exception {
+        tool.setFileContent(rootDir.resolve("file_05"), "Same start", FILE_SIZE);
+        tool.appendFileContent(rootDir.resolve("file_05"), "end 1");
+        tool.setFileContent(rootDir.resolve("file_06"), "Same start", FILE_SIZE);
+        tool.appendFileContent(rootDir.resolve("file_06"), "end 2");
+
+        DuplicateResult result = cut.findDuplicates(rootDir);
+        assertFilesDuplicated(result);
+    }
+
+    @Test
+    public void sameDuplicatesThanWhenHashingAllTheFiles() throws Exception {
+        Files.copy(rootDir.resolve("file_01"), rootDir.resolve("file_10"));
+        Files.copy(rootDir.resolve("file_01"), rootDir.resolve("file_11"));
+        Files.copy(rootDir.resolve("file_03"), rootDir.resolve("file_12"));
+        Files.createFile(rootDir.resolve("empty_file_01"));
+        Files.createFile(rootDir.resolve("empty_file_02"));
+
+        DuplicateResult result = cut.findDuplicates(rootDir);
+        assertFilesDuplicated(result, duplicatedFiles("file_03", "file_12"), duplicatedFiles("file_01", "file_10", "file_11"));
+
+        State state = new StateGenerator(context).generateState("", rootDir, rootDir);
+        DuplicateResult expected = new DuplicateFinder(context).findDuplicates(state);
+        assertThat(result.getDuplicateSets()).isEqualTo(expected.getDuplicateSets());
+        assertThat(result.getTotalWastedSpace()).isEqualTo(expected.getTotalWastedSpace());
+    }
+}
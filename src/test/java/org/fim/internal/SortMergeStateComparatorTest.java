@@ -16,29 +16,18 @@
  * You should have received a copy of the GNU General Public License
  * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
  */
+package org.fim.internal;
 
-package org.fim.model.output;
+import org.fim.tooling.BuildableContext;
 
-import java.util.ArrayList;
-import java.util.List;
-
-public class DuplicatedFiles {
-    private List<DuplicatedFile> fileList = new ArrayList<>();
-    private long wastedSpace;
-
-    public List<DuplicatedFile> getFileList() {
-        return fileList;
-    }
-
-    public void setFileList(List<DuplicatedFile> fileList) {
-        this.fileList = fileList;
-    }
-
-    public long getWastedSpace() {
-        return wastedSpace;
-    }
-
-    public void setWastedSpace(long wastedSpace) {
-        this.wastedSpace = wastedSpace;
+/**
+ * Run all the StateComparator tests using the sort-merge comparison engine.
+ */
+public class SortMergeStateComparatorTest extends StateComparatorTest {
+    @Override
+    protected BuildableContext defaultContext() {
+        BuildableContext context = super.defaultContext();
+        context.setSortMergeComparison(true);
+        return context;
     }
 }
@@ -46,8 +46,18 @@ public class StateComparatorPerformanceTest {
 
     @Test
     public void canCompareQuicklyTwoBigStates() {
-        TimeElapsed te = new TimeElapsed();
+        compareTwoBigStates(new Context());
+    }
+
+    @Test
+    public void canCompareQuicklyTwoBigStatesUsingSortMerge() {
         Context context = new Context();
+        context.setSortMergeComparison(true);
+        compareTwoBigStates(context);
+    }
+
+    private void compareTwoBigStates(Context context) {
+        TimeElapsed te = new TimeElapsed();
 
         int count = 1_000_000;
         State lastState = createState(count);
@@ -24,11 +24,15 @@ import org.fim.model.Constants;
 import org.fim.model.Context;
 import org.fim.model.FileHash;
 import org.fim.model.FileState;
+import org.fim.model.HashAlgorithm;
 import org.fim.model.HashMode;
+import org.fim.model.Modification;
 import org.fim.model.State;
+import org.fim.model.StateFormat;
 import org.fim.tooling.BuildableState;
 import org.fim.tooling.RepositoryTool;
 import org.fim.tooling.StateAssert;
+import org.fim.util.Ascii85Util;
 import org.fim.util.TestAllHashModes;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestInfo;
@@ -36,6 +40,9 @@ import org.junit.jupiter.api.TestInfo;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.fim.model.HashMode.dontHash;
@@ -45,6 +52,8 @@ public class StateManagerTest extends StateAssert {
 
     private StateManager cut;
 
+    private Context context;
+
     private TestInfo testInfo;
 
     @BeforeEach
@@ -54,7 +63,7 @@ public class StateManagerTest extends StateAssert {
 
     public void setUp(HashMode hashMode) throws IOException {
         RepositoryTool tool = new RepositoryTool(testInfo, hashMode);
-        Context context = tool.getContext();
+        context = tool.getContext();
 
         Path statesDir = context.getRepositoryStatesDir();
         FileUtils.deleteDirectory(statesDir.toFile());
@@ -99,6 +108,118 @@ public class StateManagerTest extends StateAssert {
         }
     }
 
+    @TestAllHashModes
+    public void canUseTheBinaryStateFormat(HashMode hashMode) throws IOException {
+        setUp(hashMode);
+
+        s = s.addFiles("file_1", "dir_1/file_2", "dir_1/file_3");
+        cut.createNewState(s);
+
+        SettingsManager settingsManager = new SettingsManager(context);
+        settingsManager.setStateFormat(StateFormat.binary);
+        settingsManager.save();
+
+        State binaryState = s.addFiles("dir_2/file_4");
+        FileState fileState = binaryState.getFileStates().getFirst();
+        fileState.setFileHash(new FileHash(Ascii85Util.encode(new byte[64]), Ascii85Util.encode(new byte[]{1, 2, 3, 4}), Constants.NO_HASH));
+        fileState.setFileAttributes(Map.of("PosixFilePermissions", "rw-r--r--"));
+        fileState.setModification(Modification.renamed);
+        fileState.setPreviousFileState(binaryState.getFileStates().get(1).clone());
+        cut.createNewState(binaryState);
+
+        assertThat(cut.getStateFile(1).getFileName().toString()).isEqualTo("state_1.json.gz");
+        assertThat(cut.getStateFile(2).getFileName().toString()).isEqualTo("state_2.bin.gz");
+        assertThat(cut.getLastStateNumber()).isEqualTo(2);
+
+        State result = cut.loadState(1, false);
+        assertThat(result).isEqualTo(s);
+
+        result = cut.loadState(2, false);
+        assertThat(result).isEqualTo(binaryState);
+        assertThat(result.getStateHash()).isEqualTo(binaryState.getStateHash());
+        assertThat(result.getCommitDetails().getHashModeUsedToGetTheStatus()).isEqualTo(binaryState.getCommitDetails().getHashModeUsedToGetTheStatus());
+        assertThat(result.getHashAlgorithm()).isEqualTo(HashAlgorithm.sha512);
+        FileState resultFileState = result.getFileStates().getFirst();
+        assertThat(resultFileState.getModification()).isEqualTo(Modification.renamed);
+        assertThat(resultFileState.getPreviousFileState()).isEqualTo(fileState.getPreviousFileState());
+
+        // Loading the full State checks its integrity
+        cut.loadState(2);
+    }
+
+    @TestAllHashModes
+    public void canLoadOnlyTheStateHeader(HashMode hashMode) throws IOException {
+        setUp(hashMode);
+
+        s = s.addFiles("file_1", "dir_1/file_2", "dir_1/file_3");
+        s.getFileStates().getFirst().setModification(Modification.added);
+        s.setComment("JSON State");
+        cut.createNewState(s);
+
+        SettingsManager settingsManager = new SettingsManager(context);
+        settingsManager.setStateFormat(StateFormat.binary);
+        settingsManager.save();
+
+        s.setComment("Binary State");
+        cut.createNewState(s);
+
+        for (int stateNumber = 1; stateNumber <= 2; stateNumber++) {
+            State header = cut.loadStateHeader(stateNumber, null);
+            assertThat(header.getComment()).isEqualTo(stateNumber == 1 ? "JSON State" : "Binary State");
+            assertThat(header.getFileCount()).isEqualTo(3);
+            assertThat(header.getFilesContentLength()).isEqualTo(s.getFilesContentLength());
+            assertThat(header.getFileStates()).isEmpty();
+
+            List<FileState> fileStates = new ArrayList<>();
+            header = cut.loadStateHeader(stateNumber, fileStates::add);
+            assertThat(header.getFileStates()).isEmpty();
+            assertThat(fileStates).isEqualTo(s.getFileStates());
+            assertThat(fileStates.getFirst().getModification()).isEqualTo(Modification.added);
+        }
+    }
+
+    @TestAllHashModes
+    public void canRecordTheHashAlgorithm(HashMode hashMode) throws IOException {
+        setUp(hashMode);
+
+        s = s.addFiles("file_1", "dir_1/file_2");
+        s.setHashAlgorithm(HashAlgorithm.blake3);
+        cut.createNewState(s);
+
+        SettingsManager settingsManager = new SettingsManager(context);
+        settingsManager.setStateFormat(StateFormat.binary);
+        settingsManager.save();
+
+        cut.createNewState(s);
+
+        for (int stateNumber = 1; stateNumber <= 2; stateNumber++) {
+            // Loading the full State checks its integrity
+            assertThat(cut.loadState(stateNumber).getHashAlgorithm()).isEqualTo(HashAlgorithm.blake3);
+            assertThat(cut.loadStateHeader(stateNumber, null).getHashAlgorithm()).isEqualTo(HashAlgorithm.blake3);
+        }
+    }
+
+    @TestAllHashModes
+    public void canRecordTheTreeHashSegmentSize(HashMode hashMode) throws IOException {
+        setUp(hashMode);
+
+        s = s.addFiles("file_1", "dir_1/file_2");
+        s.setTreeHashSegmentSize(Constants.SIZE_1_MB);
+        cut.createNewState(s);
+
+        SettingsManager settingsManager = new SettingsManager(context);
+        settingsManager.setStateFormat(StateFormat.binary);
+        settingsManager.save();
+
+        cut.createNewState(s);
+
+        for (int stateNumber = 1; stateNumber <= 2; stateNumber++) {
+            // Loading the full State checks its integrity
+            assertThat(cut.loadState(stateNumber).getTreeHashSegmentSize()).isEqualTo(Constants.SIZE_1_MB);
+            assertThat(cut.loadStateHeader(stateNumber, null).getTreeHashSegmentSize()).isEqualTo(Constants.SIZE_1_MB);
+        }
+    }
+
     @TestAllHashModes
     public void canRetrieveLastStateNumberWhenAStateFileIsMissing(HashMode hashMode) throws IOException {
         setUp(hashMode);
@@ -71,7 +71,7 @@ public class FileHasherPerformanceTest extends StateAssert {
 
         HashProgress hashProgress = mock(HashProgress.class);
 
-        cut = new FileHasher(context, null, hashProgress, null, rootDir.toString());
+        cut = new FileHasher(context, hashProgress, null, rootDir.toString());
     }
 
     @Test
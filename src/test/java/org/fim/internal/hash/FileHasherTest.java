@@ -25,6 +25,7 @@ import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import org.fim.model.Context;
 import org.fim.model.FileHash;
+import org.fim.model.FileReadMode;
 import org.fim.model.HashMode;
 import org.fim.model.Range;
 import org.fim.tooling.RepositoryTool;
@@ -48,6 +49,7 @@ import static java.nio.file.StandardOpenOption.APPEND;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.fim.model.HashMode.dontHash;
+import static org.fim.model.HashMode.hashAll;
 import static org.fim.model.HashMode.hashSmallBlock;
 import static org.fim.tooling.TestConstants.NO_HASH;
 import static org.fim.tooling.TestConstants.SIZE_100_MB;
@@ -94,13 +96,20 @@ public class FileHasherTest extends StateAssert {
     public void setUp(HashMode hashMode) {
         try {
             RepositoryTool tool = new RepositoryTool(testInfo, hashMode);
-            Path rootDir = tool.getRootDir();
             context = tool.getContext();
 
+            cut = createFileHasher(context);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private FileHasher createFileHasher(Context context) {
+        try {
             HashProgress hashProgress = mock(HashProgress.class);
 
-            cut = new FileHasher(context, null, hashProgress, null, rootDir.toString());
-        } catch (IOException | NoSuchAlgorithmException e) {
+            return new FileHasher(context, hashProgress, null, context.getRepositoryRootDir().toString());
+        } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
     }
@@ -239,6 +248,38 @@ public class FileHasherTest extends StateAssert {
         }
     }
 
+    @TestAllHashModes
+    public void hashA_Tree_Hashed_File(HashMode hashMode) throws IOException {
+        setUp(hashMode);
+
+        Path fileToHash = createFileWithSize(SIZE_3_MB + 291);
+        FileHash sequentialHash = cut.hashFile(fileToHash, Files.size(fileToHash));
+
+        // Segments of 1 MB, the last one being only 291 bytes long
+        byte[] fullContent = Files.readAllBytes(fileToHash);
+        HashFunction hashFunction = Hashing.sha512();
+        com.google.common.hash.Hasher treeHasher = hashFunction.newHasher();
+        for (int from = 0; from < fullContent.length; from += SIZE_1_MB) {
+            treeHasher.putBytes(hashFunction.hashBytes(extractBlock(fullContent, new Range(from, min(fullContent.length, from + SIZE_1_MB)))).asBytes());
+        }
+        String expectedTreeHash = ascii85Encode(treeHasher.hash().asBytes());
+
+        for (FileReadMode readMode : FileReadMode.values()) {
+            Context treeHashContext = context.clone();
+            treeHashContext.setTreeHashSegmentSize(SIZE_1_MB);
+            treeHashContext.setFileReadMode(readMode);
+            FileHash fileHash = createFileHasher(treeHashContext).hashFile(fileToHash, Files.size(fileToHash));
+
+            assertThat(fileHash.getSmallBlockHash()).isEqualTo(sequentialHash.getSmallBlockHash());
+            assertThat(fileHash.getMediumBlockHash()).isEqualTo(sequentialHash.getMediumBlockHash());
+            if (hashMode == hashAll) {
+                assertThat(fileHash.getFullHash()).isEqualTo(expectedTreeHash).isNotEqualTo(sequentialHash.getFullHash());
+            } else {
+                assertThat(fileHash.getFullHash()).isEqualTo(NO_HASH);
+            }
+        }
+    }
+
     private void checkFileHash(HashMode hashMode, long fileSize, Range[] smallRanges, Range[] mediumRanges) throws IOException {
         Path fileToHash = createFileWithSize((int) fileSize);
 
@@ -252,6 +293,14 @@ public class FileHasherTest extends StateAssert {
         // displayFileHash(fileSize, fileHash);
 
         assertFileHashEqualsTo(hashMode, fileSize, expectedHash, fileHash);
+
+        // The file content must be hashed the same way whatever the read mode is
+        for (FileReadMode readMode : FileReadMode.values()) {
+            Context readModeContext = context.clone();
+            readModeContext.setFileReadMode(readMode);
+            FileHasher fileHasher = createFileHasher(readModeContext);
+            assertFileHashEqualsTo(hashMode, fileSize, expectedHash, fileHasher.hashFile(fileToHash, Files.size(fileToHash)));
+        }
     }
 
     /*
@@ -0,0 +1,107 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.fim.internal.hash;
+
+import org.fim.model.Context;
+import org.fim.model.FileReadMode;
+import org.fim.model.HashMode;
+import org.fim.tooling.RepositoryTool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.fim.model.HashMode.hashAll;
+import static org.fim.model.HashMode.hashSmallBlock;
+import static org.fim.tooling.TestConstants.SIZE_1_MB;
+import static org.fim.tooling.TestConstants.SIZE_4_KB;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compare the time needed to hash files using the mmap and the read modes. The files are in the page cache after the warm-up,
+ * so that only the cost of the reading is measured.
+ */
+@Disabled // Don't run it during unit tests
+public class FileReadModePerformanceTest {
+    private RepositoryTool tool;
+
+    @BeforeEach
+    public void setUp(TestInfo testInfo) throws IOException {
+        tool = new RepositoryTool(testInfo, hashAll);
+    }
+
+    @Test
+    public void hashSmallFiles() throws IOException, NoSuchAlgorithmException {
+        compareReadModes(createFiles(10_000, SIZE_4_KB + 123), hashAll);
+        compareReadModes(createFiles(10_000, SIZE_4_KB + 123), hashSmallBlock);
+    }
+
+    @Test
+    public void hashMediumFiles() throws IOException, NoSuchAlgorithmException {
+        compareReadModes(createFiles(200, SIZE_1_MB + 123), hashAll);
+    }
+
+    @Test
+    public void hashHugeFiles() throws IOException, NoSuchAlgorithmException {
+        compareReadModes(createFiles(2, 256 * SIZE_1_MB + 123), hashAll);
+    }
+
+    private void compareReadModes(List<Path> files, HashMode hashMode) throws IOException, NoSuchAlgorithmException {
+        hashFiles(files, hashMode, FileReadMode.mmap); // Warm-up
+        for (FileReadMode readMode : new FileReadMode[]{FileReadMode.mmap, FileReadMode.read}) {
+            long start = System.nanoTime();
+            long bytesHashed = hashFiles(files, hashMode, readMode);
+            long duration = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("%d files of %d bytes, %s, %s: %d ms%n", files.size(), Files.size(files.getFirst()), hashMode, readMode, duration);
+            assertThat(bytesHashed).isGreaterThan(0);
+        }
+    }
+
+    private long hashFiles(List<Path> files, HashMode hashMode, FileReadMode readMode) throws IOException, NoSuchAlgorithmException {
+        Context context = tool.createContext(hashMode, false);
+        context.setFileReadMode(readMode);
+        FileHasher fileHasher = new FileHasher(context, mock(HashProgress.class), null, tool.getRootDir().toString());
+        for (Path file : files) {
+            fileHasher.hashFile(file, Files.size(file));
+        }
+        return fileHasher.getTotalBytesHashed();
+    }
+
+    private List<Path> createFiles(int count, int fileSize) throws IOException {
+        Random random = new Random(fileSize);
+        byte[] content = new byte[fileSize];
+        List<Path> files = new ArrayList<>();
+        for (int index = 0; index < count; index++) {
+            random.nextBytes(content);
+            Path file = tool.getRootDir().resolve("file_" + fileSize + "_" + index);
+            Files.write(file, content);
+            files.add(file);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.internal.hash;
+
+import org.fim.model.Context;
+import org.fim.model.FileHash;
+import org.fim.model.HashAlgorithm;
+import org.fim.tooling.RepositoryTool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.fim.model.HashMode.hashAll;
+import static org.fim.model.HashMode.hashMediumBlock;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class XattrHashCacheTest {
+    private static final FileHash FILE_HASH = new FileHash("small", "medium", "full");
+
+    private RepositoryTool tool;
+    private Context context;
+    private Path file;
+
+    @BeforeEach
+    public void setUp(TestInfo testInfo) throws IOException {
+        tool = new RepositoryTool(testInfo, hashAll);
+        context = tool.getContext();
+        file = tool.getRootDir().resolve("file");
+        tool.createFile(file);
+        assumeTrue(isXattrSupported(), "User extended attributes are not supported");
+    }
+
+    @Test
+    public void canReuseTheHashOfAnUnmodifiedFile() throws IOException {
+        XattrHashCache cut = new XattrHashCache(context, true);
+        assertThat(cut.read(file, readAttributes())).isNull();
+
+        cut.write(file, readAttributes(), FILE_HASH);
+
+        assertThat(cut.read(file, readAttributes())).isEqualTo(FILE_HASH);
+    }
+
+    @Test
+    public void hashIsNotReusedWhenTheFileIsModified() throws IOException {
+        XattrHashCache cut = new XattrHashCache(context, true);
+        cut.write(file, readAttributes(), FILE_HASH);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1_000));
+
+        assertThat(cut.read(file, readAttributes())).isNull();
+    }
+
+    @Test
+    public void hashIsNotReadWhenNotTrusted() throws IOException {
+        new XattrHashCache(context, true).write(file, readAttributes(), FILE_HASH);
+
+        assertThat(new XattrHashCache(context, false).read(file, readAttributes())).isNull();
+
+        context.setParanoid(true);
+        assertThat(new XattrHashCache(context, true).read(file, readAttributes())).isNull();
+    }
+
+    @Test
+    public void hashIsReusedOnlyIfComputedTheSameWay() throws IOException {
+        Context fastContext = context.clone();
+        fastContext.setHashMode(hashMediumBlock);
+        new XattrHashCache(fastContext, true).write(file, readAttributes(), FILE_HASH);
+
+        // A full hash is needed
+        assertThat(new XattrHashCache(context, true).read(file, readAttributes())).isNull();
+
+        new XattrHashCache(context, true).write(file, readAttributes(), FILE_HASH);
+        assertThat(new XattrHashCache(fastContext, true).read(file, readAttributes())).isEqualTo(FILE_HASH);
+
+        Context blake3Context = context.clone();
+        blake3Context.setHashAlgorithm(HashAlgorithm.blake3);
+        assertThat(new XattrHashCache(blake3Context, true).read(file, readAttributes())).isNull();
+
+        Context treeHashContext = context.clone();
+        treeHashContext.setTreeHashSegmentSize(1_024);
+        assertThat(new XattrHashCache(treeHashContext, true).read(file, readAttributes())).isNull();
+    }
+
+    private BasicFileAttributes readAttributes() throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    private boolean isXattrSupported() {
+        try {
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+            if (view == null) {
+                return false;
+            }
+            view.write("fim.test", StandardCharsets.UTF_8.encode("test"));
+            view.delete("fim.test");
+            return true;
+        } catch (IOException | UnsupportedOperationException ex) {
+            return false;
+        }
+    }
+}
@@ -23,6 +23,10 @@ import org.fim.tooling.ObjectAssert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class FilePatternTest {
     private FilePattern a1;
     private FilePattern a2;
@@ -45,4 +49,13 @@ public class FilePatternTest {
     public void hashcodeIsWorking() {
         ObjectAssert.hashcodeIsWorking(a1, a2, b);
     }
+
+    @Test
+    public void fileIsSelectedByTheIncludeAndExcludePatterns() {
+        assertThat(FilePattern.isSelected("song.mp3", null, null)).isTrue();
+        assertThat(FilePattern.isSelected("song.mp3", List.of(a1), null)).isTrue();
+        assertThat(FilePattern.isSelected("foo", List.of(a1), null)).isFalse();
+        assertThat(FilePattern.isSelected("foo", null, List.of(b))).isFalse();
+        assertThat(FilePattern.isSelected("song.mp3", List.of(a1), List.of(a2))).isFalse();
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.model;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.fim.util.TimeElapsed;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Disabled // Don't run it during unit tests
+public class FileStatePerformanceTest {
+    private static final int FILE_COUNT = 1_000_000;
+    private static final int ITERATIONS = 5;
+
+    @Test
+    public void longHashCodeIsFasterThanSha512() {
+        List<FileState> fileStates = createFileStates();
+
+        long sha512Duration = Long.MAX_VALUE;
+        long longHashCodeDuration = Long.MAX_VALUE;
+        long blackHole = 0;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            TimeElapsed te = new TimeElapsed();
+            for (FileState fileState : fileStates) {
+                blackHole += sha512HashCode(fileState);
+            }
+            sha512Duration = Math.min(sha512Duration, te.getDuration());
+
+            te = new TimeElapsed();
+            for (FileState fileState : fileStates) {
+                blackHole += fileState.longHashCode();
+            }
+            longHashCodeDuration = Math.min(longHashCodeDuration, te.getDuration());
+        }
+
+        System.out.printf("%d FileStates: SHA-512 = %d ms, longHashCode = %d ms (%d)%n", FILE_COUNT, sha512Duration, longHashCodeDuration, blackHole);
+        assertThat(longHashCodeDuration).isLessThan(sha512Duration);
+    }
+
+    /**
+     * The previous implementation of longHashCode()
+     */
+    private static long sha512HashCode(FileState fileState) {
+        Hasher hasher = Hashing.sha512().newHasher(Constants.SIZE_4_KB);
+        fileState.hashObject(hasher, true);
+        return hasher.hash().asLong();
+    }
+
+    private static List<FileState> createFileStates() {
+        List<FileState> fileStates = new ArrayList<>();
+        for (int index = 0; index < FILE_COUNT; index++) {
+            String fileName = "dir_" + (index % 1_000) + "/sub_dir_" + (index % 100) + "/file_" + index;
+            FileHash fileHash = new FileHash(UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString());
+            fileStates.add(new FileState(fileName, index, new FileTime(System.currentTimeMillis()), fileHash,
+                    Arrays.asList(new Attribute("PosixFilePermissions", "rw-r--r--"))));
+        }
+        return fileStates;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.server;
+
+import org.apache.commons.io.FileUtils;
+import org.fim.util.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.fim.server.FimClient.OUTPUT;
+
+public class FimServerTest {
+    private Path tempDir;
+    private Path socketFile;
+    private FimServer server;
+    private Thread serverThread;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // Unix domain socket paths are limited to about 100 characters
+        tempDir = Files.createTempDirectory("fim-server");
+        socketFile = tempDir.resolve("fim.sock");
+        server = new FimServer(socketFile);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        server.close();
+        if (serverThread != null) {
+            serverThread.join();
+        }
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    public void commandsKeepTheirOutputAndExitStatus() throws Exception {
+        PrintStream initialOut = Logger.out;
+        startServer();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(runClient(tempDir, output, "version")).isEqualTo(0);
+        assertThat(output.toString()).contains("Fim version");
+
+        output = new ByteArrayOutputStream();
+        assertThat(runClient(tempDir, output, "unknown-command")).isEqualTo(-1);
+        assertThat(output.toString()).contains("'unknown-command' is not a fim command");
+
+        Path repository = Files.createDirectories(tempDir.resolve("repository"));
+        Files.writeString(repository.resolve("file01"), "file01 content");
+        output = new ByteArrayOutputStream();
+        assertThat(runClient(repository, output, "init", "-y", "-m", "Initial")).isEqualTo(0);
+        assertThat(repository.resolve(".fim")).isDirectory();
+
+        output = new ByteArrayOutputStream();
+        assertThat(runClient(tempDir, output, "status", "-d", "repository")).isEqualTo(0);
+        assertThat(output.toString()).contains("Nothing modified");
+
+        output = new ByteArrayOutputStream();
+        assertThat(runClient(tempDir, output, "status")).isEqualTo(-1);
+        assertThat(output.toString()).contains("Fim repository does not exist");
+
+        assertThat(server.getCommandCount()).isEqualTo(5);
+        assertThat(Logger.out).isSameAs(initialOut);
+    }
+
+    @Test
+    public void relativeMasterDirectoryIsTheOneOfTheClient() throws Exception {
+        startServer();
+
+        Path master = Files.createDirectories(tempDir.resolve("master"));
+        Files.writeString(master.resolve("file01"), "file01 content");
+        assertThat(runClient(master, new ByteArrayOutputStream(), "init", "-y", "-m", "Initial")).isEqualTo(0);
+
+        Path satellite = Files.createDirectories(tempDir.resolve("satellite"));
+        Files.writeString(satellite.resolve("dup_file01"), "file01 content");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(runClient(satellite, output, "rdup", "-M", "../master", "-y")).isEqualTo(0);
+        assertThat(output.toString()).contains("'dup_file01' removed");
+        assertThat(satellite.resolve("dup_file01")).doesNotExist();
+    }
+
+    @Test
+    public void standardInputIsForwarded() throws Exception {
+        startServer();
+
+        Path repository = Files.createDirectories(tempDir.resolve("repository"));
+        Files.writeString(repository.resolve("file01"), "file01 content");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(runClient(repository, output, "init", "-y", "-m", "Initial")).isEqualTo(0);
+
+        // Answer 'n' to the confirmation of the commit without comment
+        output = new ByteArrayOutputStream();
+        Integer exitStatus = FimClient.run(socketFile, repository, new String[]{"commit"}, new ByteArrayInputStream("n\n".getBytes()), output);
+        assertThat(exitStatus).isEqualTo(0);
+        assertThat(output.toString()).contains("Do you really want to continue");
+    }
+
+    @Test
+    public void commandIsInterruptedWhenTheClientIsGone() throws Exception {
+        startServer();
+
+        Path repository = Files.createDirectories(tempDir.resolve("repository"));
+        Files.writeString(repository.resolve("file01"), "file01 content");
+        assertThat(runClient(repository, new ByteArrayOutputStream(), "init", "-y", "-m", "Initial")).isEqualTo(0);
+        Files.writeString(repository.resolve("file02"), "file02 content");
+
+        // A client that leaves while the commit waits for its confirmation, without sending the end of its standard input
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketFile))) {
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeUTF(repository.toString());
+            out.writeInt(1);
+            out.writeUTF("commit");
+            out.flush();
+
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            StringBuilder output = new StringBuilder();
+            while (!output.toString().contains("Do you really want to continue")) {
+                assertThat(in.read()).isEqualTo(OUTPUT);
+                output.append(new String(in.readNBytes(in.readInt())));
+            }
+        }
+
+        // The next commands are not blocked
+        assertThat(runClient(repository, new ByteArrayOutputStream(), "version")).isEqualTo(0);
+        assertThat(server.getCommandCount()).isEqualTo(3);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(runClient(repository, output, "log")).isEqualTo(0);
+        assertThat(output.toString()).contains("State #1").doesNotContain("State #2");
+    }
+
+    @Test
+    public void watchIsRefusedAsItWouldBlockTheServer() throws Exception {
+        startServer();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(runClient(tempDir, output, "watch")).isEqualTo(-1);
+        assertThat(output.toString()).contains("The 'watch' command cannot run into the Fim server");
+
+        // The next commands still run
+        assertThat(runClient(tempDir, new ByteArrayOutputStream(), "version")).isEqualTo(0);
+    }
+
+    @Test
+    public void onlyOneServerCanListen() throws Exception {
+        startServer();
+
+        try (FimServer otherServer = new FimServer(socketFile)) {
+            assertThat(otherServer.start()).isFalse();
+        }
+        assertThat(socketFile).exists();
+        assertThat(FimClient.isServerRunning(socketFile)).isTrue();
+    }
+
+    @Test
+    public void clientRunsNothingWithoutServer() throws Exception {
+        assertThat(runClient(tempDir, new ByteArrayOutputStream(), "version")).isNull();
+    }
+
+    private void startServer() throws IOException {
+        assertThat(server.start()).isTrue();
+        serverThread = new Thread(server::serve);
+        serverThread.start();
+    }
+
+    private Integer runClient(Path currentDirectory, ByteArrayOutputStream output, String... args) throws IOException {
+        return FimClient.run(socketFile, currentDirectory, args, new ByteArrayInputStream(new byte[0]), output);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.fim.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Blake3MessageDigestTest {
+    private final MessageDigest digest = new Blake3MessageDigest();
+
+    @Test
+    public void canHashBytes() {
+        assertThat(hex(digest.digest(new byte[0]))).isEqualTo("af1349b9f5f9a1a6a0404dea36dcc9499bcb25c9adc112b7cc9a93cae41f3262");
+        assertThat(hex(digest.digest("abc".getBytes(StandardCharsets.US_ASCII))))
+                .isEqualTo("6437b3ac38465133ffb63b75273a8db548c558465d79db03fd359c6cd5bd9d85");
+    }
+
+    @Test
+    public void canHashSeveralChunks() {
+        // Input made of the bytes 0 to 250 repeated, like in the official test vectors
+        assertThat(hex(digest.digest(input(1)))).isEqualTo("2d3adedff11b61f14c886e35afa036736dcd87a74d27b5c1510225d0f592e213");
+        assertThat(hex(digest.digest(input(1_023)))).isEqualTo("10108970eeda3eb932baac1428c7a2163b0e924c9a9e25b35bba72b28f70bd11");
+        assertThat(hex(digest.digest(input(1_024)))).isEqualTo("42214739f095a406f3fc83deb889744ac00df831c10daa55189b5d121c855af7");
+        assertThat(hex(digest.digest(input(1_025)))).isEqualTo("d00278ae47eb27b34faecf67b4fe263f82d5412916c1ffd97c8cb7fb814b8444");
+        assertThat(hex(digest.digest(input(2_048)))).isEqualTo("e776b6028c7cd22a4d0ba182a8bf62205d2ef576467e838ed6f2529b85fba24a");
+        assertThat(hex(digest.digest(input(3_073)))).isEqualTo("7124b49501012f81cc7f11ca069ec9226cecb8a2c850cfe644e327d22d3e1cd3");
+        assertThat(hex(digest.digest(input(5_120)))).isEqualTo("9cadc15fed8b5d854562b26a9536d9707cadeda9b143978f319ab34230535833");
+        assertThat(hex(digest.digest(input(31_744)))).isEqualTo("62b6960e1a44bcc1eb1a611a8d6235b6b4b78f32e7abc4fb4c6cdcce94895c47");
+        assertThat(hex(digest.digest(input(102_400)))).isEqualTo("bc3e3d41a1146b069abffad3c0d44860cf664390afce4d9661f7902e7943e085");
+    }
+
+    @Test
+    public void resultDoesNotDependOnHowTheInputIsSplit() {
+        byte[] bytes = input(10_000);
+        byte[] expected = digest.digest(bytes);
+
+        for (int splitSize : new int[]{1, 63, 64, 65, 1_024, 4_097}) {
+            for (int offset = 0; offset < bytes.length; offset += splitSize) {
+                digest.update(bytes, offset, Math.min(splitSize, bytes.length - offset));
+            }
+            assertThat(digest.digest()).isEqualTo(expected);
+        }
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        digest.update(direct);
+        assertThat(digest.digest()).isEqualTo(expected);
+    }
+
+    private static byte[] input(int length) {
+        byte[] bytes = new byte[length];
+        for (int index = 0; index < length; index++) {
+            bytes[index] = (byte) (index % 251);
+        }
+        return bytes;
+    }
+
+    private static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+}
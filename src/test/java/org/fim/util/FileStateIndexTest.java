@@ -0,0 +1,82 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.util;
+
+import org.fim.model.FileHash;
+import org.fim.model.FileState;
+import org.fim.model.FileTime;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FileStateIndexTest {
+    @Test
+    public void canFindEqualFileStates() {
+        FileState file1 = createFileState("file_1");
+        FileState file2 = createFileState("file_2");
+        FileStateIndex index = new FileStateIndex(Arrays.asList(file1, file2));
+
+        assertThat(index.remove(createFileState("file_3"))).isNull();
+        assertThat(index.remove(createFileState("file_1"))).isSameAs(file1);
+        assertThat(index.remove(createFileState("file_1"))).isNull();
+        assertThat(index.values()).containsExactly(file2);
+    }
+
+    @Test
+    public void collisionsAreManaged() {
+        FileState file1 = new CollidingFileState("file_1");
+        FileState file2 = new CollidingFileState("file_2");
+        FileState file3 = new CollidingFileState("file_3");
+        FileStateIndex index = new FileStateIndex(Arrays.asList(file1, file2, file3));
+        assertThat(index.values()).containsExactlyInAnyOrder(file1, file2, file3);
+
+        assertThat(index.remove(new CollidingFileState("file_4"))).isNull();
+        assertThat(index.remove(new CollidingFileState("file_2"))).isSameAs(file2);
+        assertThat(index.remove(new CollidingFileState("file_1"))).isSameAs(file1);
+        assertThat(index.values()).containsExactly(file3);
+        assertThat(index.remove(new CollidingFileState("file_3"))).isSameAs(file3);
+        assertThat(index.values()).isEmpty();
+    }
+
+    @Test
+    public void duplicatedEntriesAreRejected() {
+        assertThrows(IllegalStateException.class, () -> new FileStateIndex(Arrays.asList(createFileState("file_1"), createFileState("file_1"))));
+        assertThrows(IllegalStateException.class, () -> new FileStateIndex(Arrays.asList(
+                new CollidingFileState("file_1"), new CollidingFileState("file_2"), new CollidingFileState("file_2"))));
+    }
+
+    private static FileState createFileState(String fileName) {
+        return new FileState(fileName, 1L, new FileTime(1_000L), new FileHash("1", "11", "111"), null);
+    }
+
+    private static class CollidingFileState extends FileState {
+        CollidingFileState(String fileName) {
+            super(fileName, 1L, new FileTime(1_000L), new FileHash("1", "11", "111"), null);
+        }
+
+        @Override
+        public long longHashCode() {
+            return 42;
+        }
+    }
+}
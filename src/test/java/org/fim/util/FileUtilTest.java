@@ -31,8 +31,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
 public class FileUtilTest {
     @Test
@@ -106,6 +109,40 @@ public class FileUtilTest {
         assertThat(result).isFalse();
     }
 
+    @Test
+    public void canGetTheInodeOfAFile() throws IOException {
+        Path rootDir = Paths.get(TestConstants.BUILD_TEST_OUTPUTS + "/FileUtilTest-canGetTheInodeOfAFile");
+        org.apache.commons.io.FileUtils.deleteDirectory(rootDir.toFile());
+        Files.createDirectories(rootDir);
+        Path file = Files.createFile(rootDir.resolve("file.txt"));
+
+        long inode = FileUtil.getInode(Files.readAttributes(file, BasicFileAttributes.class));
+        if (SystemUtils.IS_OS_WINDOWS) {
+            assertThat(inode).isEqualTo(-1);
+        } else {
+            assertThat(inode).isEqualTo(((Number) Files.getAttribute(file, "unix:ino")).longValue());
+        }
+    }
+
+    @Test
+    public void canCopyTheAttributesOfAFile() throws IOException {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        Path rootDir = Paths.get(TestConstants.BUILD_TEST_OUTPUTS + "/FileUtilTest-canCopyTheAttributesOfAFile");
+        org.apache.commons.io.FileUtils.deleteDirectory(rootDir.toFile());
+        Files.createDirectories(rootDir);
+        Path source = Files.createFile(rootDir.resolve("source.txt"));
+        Path target = Files.createFile(rootDir.resolve("target.txt"));
+        Files.setPosixFilePermissions(source, PosixFilePermissions.fromString("rw-------"));
+        Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rw-r--r--"));
+        Files.setLastModifiedTime(source, java.nio.file.attribute.FileTime.fromMillis(1_000_000_000_000L));
+
+        FileUtil.copyFileAttributes(new Context(), source, target);
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(target))).isEqualTo("rw-------");
+        assertThat(Files.getOwner(target)).isEqualTo(Files.getOwner(source));
+        assertThat(Files.getLastModifiedTime(target).toMillis()).isEqualTo(1_000_000_000_000L);
+    }
+
     @Test
     public void canConvertZeroByteCountToDisplaySize() {
         String displaySize = FileUtil.byteCountToDisplaySize(0);
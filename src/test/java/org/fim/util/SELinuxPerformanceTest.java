@@ -0,0 +1,79 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.fim.util;
+
+import org.apache.commons.io.FileUtils;
+import org.fim.model.Context;
+import org.fim.tooling.TestConstants;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Disabled // Don't run it during unit tests
+public class SELinuxPerformanceTest {
+    private static final int DIRECTORY_COUNT = 20;
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    @Test
+    public void retrievingLabelsByDirectoryIsFasterThanByFile() throws IOException {
+        assumeTrue(SELinux.ENABLED);
+
+        Context context = new Context();
+        List<Path> files = createFiles();
+
+        long start = System.currentTimeMillis();
+        for (Path file : files) {
+            SELinux.getFileLabel(context, file);
+        }
+        long byFileDuration = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        for (Path file : files) {
+            SELinux.getLabel(context, file);
+        }
+        long byDirectoryDuration = System.currentTimeMillis() - start;
+
+        System.out.printf("%d files: one process per file = %d ms, one process per directory = %d ms%n",
+                files.size(), byFileDuration, byDirectoryDuration);
+        assertThat(byDirectoryDuration).isLessThan(byFileDuration);
+    }
+
+    private List<Path> createFiles() throws IOException {
+        Path rootDir = Paths.get(TestConstants.BUILD_TEST_OUTPUTS + "/SELinuxPerformanceTest");
+        FileUtils.deleteDirectory(rootDir.toFile());
+
+        List<Path> files = new ArrayList<>();
+        for (int dirIndex = 0; dirIndex < DIRECTORY_COUNT; dirIndex++) {
+            Path dir = Files.createDirectories(rootDir.resolve("dir_" + dirIndex));
+            for (int fileIndex = 0; fileIndex < FILES_PER_DIRECTORY; fileIndex++) {
+                files.add(Files.createFile(dir.resolve("file_" + fileIndex)));
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.fim.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.fim.model.Context;
+import org.fim.tooling.TestConstants;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+public class SELinuxTest {
+    @Test
+    public void labelsRetrievedByDirectoryAreTheSameAsTheOnesRetrievedByFile() throws IOException {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+
+        Context context = new Context();
+        Path rootDir = Paths.get(TestConstants.BUILD_TEST_OUTPUTS + "/SELinuxTest-labelsRetrievedByDirectory");
+        FileUtils.deleteDirectory(rootDir.toFile());
+        Files.createDirectories(rootDir.resolve("dir_1"));
+        Path file1 = Files.createFile(rootDir.resolve("file_1"));
+        Path file2 = Files.createFile(rootDir.resolve("dir_1").resolve("file_2"));
+
+        assertThat(SELinux.getLabel(context, file1)).isEqualTo(SELinux.getFileLabel(context, file1));
+        assertThat(SELinux.getLabel(context, file2)).isEqualTo(SELinux.getFileLabel(context, file2));
+        assertThat(SELinux.getLabel(context, rootDir.resolve("dir_1"))).isEqualTo(SELinux.getFileLabel(context, rootDir.resolve("dir_1")));
+
+        // Created after the directory was listed
+        Path file3 = Files.createFile(rootDir.resolve("file_3"));
+        assertThat(SELinux.getLabel(context, file3)).isEqualTo(SELinux.getFileLabel(context, file3));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of Fim - File Integrity Manager
+ *
+ * Copyright (C) 2025 Etienne Vrignaud
+ *
+ * Fim is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Fim is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Fim.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.fim.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XxHash64Test {
+    @Test
+    public void canHashBytes() {
+        assertThat(XxHash64.hash(new byte[0], 0)).isEqualTo(0xEF46DB3751D8E999L);
+        assertThat(XxHash64.hash("a".getBytes(StandardCharsets.US_ASCII), 0)).isEqualTo(0xD24EC4F1A98C6E5BL);
+        assertThat(XxHash64.hash("abc".getBytes(StandardCharsets.US_ASCII), 0)).isEqualTo(0x44BC2CF5AD770999L);
+        assertThat(XxHash64.hash("Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII), 0))
+                .isEqualTo(0xFBCEA83C8A378BF1L);
+    }
+
+    @Test
+    public void charsAreHashedAsUtf16LittleEndianBytes() {
+        String[] values = {"", "a", "ab", "abcd", "dir/sub_dir/file_name.txt", "Dossier été/Fichier ünïcode — 1234567890.txt"};
+        for (String value : values) {
+            for (long seed : new long[]{0, 42, -1}) {
+                assertThat(XxHash64.hash(value, seed)).isEqualTo(XxHash64.hash(value.getBytes(StandardCharsets.UTF_16LE), seed));
+            }
+        }
+    }
+
+    @Test
+    public void canHashALong() {
+        long value = 0x0123456789ABCDEFL;
+        byte[] bytes = new byte[8];
+        for (int index = 0; index < 8; index++) {
+            bytes[index] = (byte) (value >>> (index * 8));
+        }
+        assertThat(XxHash64.hash(value, 7)).isEqualTo(XxHash64.hash(bytes, 7));
+    }
+}